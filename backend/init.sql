@@ -35,7 +35,16 @@ CREATE TABLE orders (
     status ENUM('PENDING', 'PREPARING', 'READY_FOR_PICKUP', 'COMPLETED', 'CANCELLED') DEFAULT 'PENDING',
     pickup_time DATETIME NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    FOREIGN KEY (user_id) REFERENCES users(user_id)
+    stock_pending INT NOT NULL DEFAULT 0,
+    idempotency_key VARCHAR(64) NULL,
+    idempotency_fingerprint CHAR(64) NULL,
+    FOREIGN KEY (user_id) REFERENCES users(user_id),
+    INDEX idx_orders_created (created_at, order_id),
+    INDEX idx_orders_status_created (status, created_at, order_id),
+    INDEX idx_orders_user_created (user_id, created_at, order_id),
+    INDEX idx_orders_stock_pending (stock_pending),
+    INDEX idx_orders_pickup (pickup_time),
+    UNIQUE KEY uq_orders_idempotency (user_id, idempotency_key)
 );
 
 -- 4. Order Items (What cakes are inside the order?)
@@ -58,6 +67,8 @@ CREATE TABLE feedback (
     rating INT CHECK (rating >= 1 AND rating <= 5),
     comment TEXT,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_feedback_product_created (product_id, created_at, feedback_id),
+    INDEX idx_feedback_product_rating (product_id, rating, created_at, feedback_id),
     FOREIGN KEY (user_id) REFERENCES users(user_id),
     FOREIGN KEY (product_id) REFERENCES products(product_id),
     FOREIGN KEY (order_id) REFERENCES orders(order_id),
@@ -212,3 +223,22 @@ INSERT INTO feedback (user_id, product_id, rating, comment) VALUES
 (2, 36, 4, 'Cheese stick bun is savory and satisfying.'),
 (2, 37, 5, 'Chicken floss bun is a Malaysian favorite!'),
 (2, 53, 4, 'Mexican coffee bun has the best butter filling.');
+
+-- 8. Rating aggregates per product (kept up to date by FeedbackDAO.addFeedback)
+CREATE TABLE product_ratings (
+    product_id INT PRIMARY KEY,
+    rating_sum BIGINT NOT NULL DEFAULT 0,
+    rating_count INT NOT NULL DEFAULT 0,
+    stars_1 INT NOT NULL DEFAULT 0,
+    stars_2 INT NOT NULL DEFAULT 0,
+    stars_3 INT NOT NULL DEFAULT 0,
+    stars_4 INT NOT NULL DEFAULT 0,
+    stars_5 INT NOT NULL DEFAULT 0
+);
+
+INSERT INTO product_ratings (product_id, rating_sum, rating_count, stars_1, stars_2, stars_3, stars_4, stars_5)
+SELECT product_id, SUM(rating), COUNT(*),
+       SUM(CASE WHEN rating = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN rating = 2 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN rating = 3 THEN 1 ELSE 0 END), SUM(CASE WHEN rating = 4 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN rating = 5 THEN 1 ELSE 0 END)
+FROM feedback GROUP BY product_id;
@@ -0,0 +1,74 @@
+package com.fivestarsbakery.bench;
+
+import com.fivestarsbakery.cache.CachedJson;
+import com.fivestarsbakery.cache.JsonCache;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CPU per request and bytes on the wire for the large JSON endpoints:
+ * - identity:      serialize and send as-is (before CompressionFilter)
+ * - gzipStreaming: serialize through gzip on every request (filter on a non-cached endpoint)
+ * - gzipCached:    cached body with its gzip form computed once (products/categories/ratings)
+ *
+ * Bytes per request for each variant are printed once per fork during setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+
+    @Param({ "products", "orders" })
+    public String payload;
+
+    private final Gson gson = new Gson();
+    private Object body;
+    private JsonCache cache;
+
+    @Setup
+    public void setUp() {
+        List<com.fivestarsbakery.model.Product> catalog = SyntheticData.products(120);
+        body = payload.equals("products") ? catalog : SyntheticData.orders(500, 4, catalog);
+        cache = new JsonCache(0);
+        try {
+            System.out.printf("%n[%s] identity=%d bytes, gzipStreaming=%d bytes, gzipCached=%d bytes%n",
+                    payload, identity().length, gzipStreaming().length, gzipCached().length);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public byte[] identity() {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] gzipStreaming() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(out, 8192, true), StandardCharsets.UTF_8)) {
+            gson.toJson(body, writer);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] gzipCached() {
+        CachedJson json = cache.get(1, () -> body);
+        byte[] bytes = json.getGzipBytes();
+        return bytes;
+    }
+}
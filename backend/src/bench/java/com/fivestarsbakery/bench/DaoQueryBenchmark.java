@@ -0,0 +1,72 @@
+package com.fivestarsbakery.bench;
+
+import com.fivestarsbakery.cache.ProductCatalog;
+import com.fivestarsbakery.dao.FeedbackDAO;
+import com.fivestarsbakery.dao.OrderDAO;
+import com.fivestarsbakery.dao.ProductDAO;
+import com.fivestarsbakery.util.DBConnection;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DAO round trips against the in-memory H2 stand-in (MySQL mode, seeded from init.sql),
+ * through the real connection pool. Absolute numbers say little about MySQL/TiDB;
+ * use them to catch regressions in query shape and mapping.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DaoQueryBenchmark {
+
+    private static final int CUSTOMER_ID = 2;
+
+    private OrderDAO orderDAO;
+    private ProductDAO productDAO;
+    private FeedbackDAO feedbackDAO;
+
+    @Setup
+    public void setUp() throws Exception {
+        String url = BenchDatabase.memoryUrl("dao-bench");
+        try (Connection conn = BenchDatabase.connect(url)) {
+            BenchDatabase.reset(conn);
+            BenchDatabase.seedOrders(conn, CUSTOMER_ID, 5_000, 3);
+        }
+        BenchDatabase.use(url);
+        orderDAO = new OrderDAO();
+        productDAO = new ProductDAO();
+        feedbackDAO = new FeedbackDAO();
+    }
+
+    @TearDown
+    public void tearDown() {
+        DBConnection.shutdown();
+    }
+
+    @Benchmark
+    public Object adminOrderPage() throws Exception {
+        return orderDAO.getOrdersPage(new OrderDAO.OrderFilter(), null, 50);
+    }
+
+    @Benchmark
+    public void customerHistory(Blackhole bh) throws Exception {
+        orderDAO.streamOrdersByUserId(CUSTOMER_ID, bh::consume);
+    }
+
+    // Forces the catalog to reload from the database on every call
+    @Benchmark
+    public Object productCatalogLoad() {
+        ProductCatalog.getInstance().invalidate();
+        return productDAO.getAllProducts();
+    }
+
+    @Benchmark
+    public Object productRatings() {
+        return feedbackDAO.getAllProductRatings();
+    }
+}
@@ -0,0 +1,95 @@
+package com.fivestarsbakery.bench;
+
+import com.fivestarsbakery.controller.*;
+import com.fivestarsbakery.listener.ConnectionPoolListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * The backend's API servlets and filters in an embedded Tomcat 10.1 on a free local port.
+ * Mappings are read from each class's own @WebServlet/@WebFilter, so they match the WAR.
+ * Point DBConnection somewhere first (see BenchDatabase.use).
+ */
+public final class EmbeddedServer implements AutoCloseable {
+
+    private static final List<Class<? extends HttpServlet>> SERVLETS = List.of(
+            ProductServlet.class, CategoryServlet.class, OrderServlet.class, FeedbackServlet.class,
+            LoginServlet.class, HealthServlet.class, MetricsServlet.class, PickupSlotServlet.class,
+            KitchenServlet.class);
+
+    // Registration order is filter order
+    private static final List<Class<? extends Filter>> FILTERS = List.of(
+            CorsFilter.class, ServiceUnavailableFilter.class, CompressionFilter.class);
+
+    private final Tomcat tomcat = new Tomcat();
+
+    public EmbeddedServer() throws LifecycleException {
+        this(false);
+    }
+
+    /**
+     * virtualThreads runs requests on a virtual thread each (the connector's useVirtualThreads)
+     * instead of Tomcat's platform pool of maxThreads.
+     */
+    public EmbeddedServer(boolean virtualThreads) throws LifecycleException {
+        File baseDir = new File("target/tomcat");
+        baseDir.mkdirs();
+        tomcat.setBaseDir(baseDir.getAbsolutePath());
+        tomcat.setPort(0);
+        tomcat.getConnector().setProperty("useVirtualThreads", String.valueOf(virtualThreads));
+
+        Context context = tomcat.addContext("", baseDir.getAbsolutePath());
+        context.addApplicationListener(ConnectionPoolListener.class.getName());
+        for (Class<? extends HttpServlet> servlet : SERVLETS) {
+            WebServlet mapping = servlet.getAnnotation(WebServlet.class);
+            Tomcat.addServlet(context, servlet.getSimpleName(), servlet.getName())
+                    .setAsyncSupported(mapping.asyncSupported());
+            for (String pattern : patterns(mapping.value(), mapping.urlPatterns())) {
+                context.addServletMappingDecoded(pattern, servlet.getSimpleName());
+            }
+        }
+        for (Class<? extends Filter> filter : FILTERS) {
+            WebFilter mapping = filter.getAnnotation(WebFilter.class);
+            FilterDef def = new FilterDef();
+            def.setFilterName(filter.getSimpleName());
+            def.setFilterClass(filter.getName());
+            def.setAsyncSupported(String.valueOf(mapping.asyncSupported()));
+            context.addFilterDef(def);
+            FilterMap map = new FilterMap();
+            map.setFilterName(filter.getSimpleName());
+            for (String pattern : patterns(mapping.value(), mapping.urlPatterns())) {
+                map.addURLPatternDecoded(pattern);
+            }
+            context.addFilterMap(map);
+        }
+        tomcat.start();
+    }
+
+    private static String[] patterns(String[] value, String[] urlPatterns) {
+        return value.length > 0 ? value : urlPatterns;
+    }
+
+    public int getPort() {
+        return tomcat.getConnector().getLocalPort();
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + getPort();
+    }
+
+    @Override
+    public void close() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+}
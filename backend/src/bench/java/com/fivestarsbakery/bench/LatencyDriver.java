@@ -0,0 +1,108 @@
+package com.fivestarsbakery.bench;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Makes the in-process H2 stand-in answer like a database a network round trip away:
+ * every statement execution and commit sleeps for the configured time first.
+ * URL form: jdbc:bench-latency:<millis>:<real url>, built by wrap().
+ */
+final class LatencyDriver implements Driver {
+
+    private static final String PREFIX = "jdbc:bench-latency:";
+    private static final LatencyDriver INSTANCE = new LatencyDriver();
+
+    static {
+        try {
+            DriverManager.registerDriver(INSTANCE);
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private LatencyDriver() {
+    }
+
+    static String wrap(String url, long millis) {
+        return PREFIX + millis + ":" + url;
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) return null;
+        String rest = url.substring(PREFIX.length());
+        int colon = rest.indexOf(':');
+        long millis = Long.parseLong(rest.substring(0, colon));
+        Connection real = DriverManager.getConnection(rest.substring(colon + 1), info);
+        return delayed(Connection.class, real, millis);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T delayed(Class<T> type, T target, long millis) {
+        return (T) Proxy.newProxyInstance(LatencyDriver.class.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("execute") || name.equals("commit")) {
+                        Thread.sleep(millis);
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof CallableStatement cs && method.getReturnType() == CallableStatement.class) {
+                        return delayed(CallableStatement.class, cs, millis);
+                    }
+                    if (result instanceof PreparedStatement ps && method.getReturnType() == PreparedStatement.class) {
+                        return delayed(PreparedStatement.class, ps, millis);
+                    }
+                    if (result instanceof Statement s && method.getReturnType() == Statement.class) {
+                        return delayed(Statement.class, s, millis);
+                    }
+                    return result;
+                });
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
@@ -0,0 +1,412 @@
+package com.fivestarsbakery.bench;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Lunch-rush replay: boots the API in an embedded Tomcat against the H2 stand-in and drives it
+ * with virtual users, each looping over a weighted mix of journeys:
+ * - browse:   product list, categories, a search, ratings, one product, its review summary
+ * - checkout: login, list tomorrow's pickup slots, place an order in one with room
+ * - rate:     own order history, review an unrated item
+ * - admin:    first page of all orders, advance one order's status
+ *
+ * Reports count, errors, throughput and p50/p99/max latency per endpoint after the warm-up.
+ *
+ * Arguments (key=value, all optional):
+ *   users=50 seconds=30 warmup=5 think=50 mix=browse:60,checkout:20,rate:10,admin:10
+ *   threads=platform dbLatency=0 slotCapacity=100000
+ * think is the mean pause in ms between journeys (uniform 0..2x).
+ * threads picks Tomcat's request threads: platform (pool of maxThreads) or virtual.
+ * dbLatency adds that many ms to every statement and commit, like a database across the network.
+ * slotCapacity is PICKUP_SLOT_CAPACITY; the default keeps checkouts from selling out the slots.
+ *
+ *   mvn -Pbench test-compile exec:exec -Dbench.main=com.fivestarsbakery.bench.LoadTest \
+ *       -Dbench.args="users=100 seconds=60"
+ *
+ * Platform against virtual threads, 1k browsing clients on a slow database (run once per mode):
+ *   -Dbench.args="users=1000 mix=browse:100 dbLatency=20 threads=platform"
+ *   -Dbench.args="users=1000 mix=browse:100 dbLatency=20 threads=virtual"
+ */
+public class LoadTest {
+
+    private static final String PASSWORD = "12345";
+
+    private final String baseUrl;
+    private final HttpClient client;
+    private final int productCount;
+    private volatile boolean recording;
+    private volatile boolean running = true;
+
+    LoadTest(String baseUrl, int productCount) {
+        this.baseUrl = baseUrl;
+        this.productCount = productCount;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int users = Integer.parseInt(options.getOrDefault("users", "50"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int think = Integer.parseInt(options.getOrDefault("think", "50"));
+        Map<String, Integer> mix = parseMix(options.getOrDefault("mix", "browse:60,checkout:20,rate:10,admin:10"));
+        String threads = options.getOrDefault("threads", "platform");
+        int dbLatency = Integer.parseInt(options.getOrDefault("dbLatency", "0"));
+        System.setProperty("PICKUP_SLOT_CAPACITY", options.getOrDefault("slotCapacity", "100000"));
+        if (!threads.equals("platform") && !threads.equals("virtual")) {
+            throw new IllegalArgumentException("threads must be platform or virtual: " + threads);
+        }
+
+        String url = BenchDatabase.memoryUrl("load-test");
+        int products;
+        try (Connection conn = BenchDatabase.connect(url)) {
+            BenchDatabase.reset(conn);
+            products = BenchDatabase.count(conn, "products");
+            prepareData(conn, users);
+        }
+        BenchDatabase.use(dbLatency > 0 ? LatencyDriver.wrap(url, dbLatency) : url);
+
+        try (EmbeddedServer server = new EmbeddedServer(threads.equals("virtual"))) {
+            LoadTest test = new LoadTest(server.getBaseUrl(), products);
+            System.out.printf("%nLoad test: %d users, %ds (+%ds warm-up), think %d ms, mix %s, %s threads, "
+                    + "db latency %d ms, %s%n", users, seconds, warmup, think, mix, threads, dbLatency, server.getBaseUrl());
+            Map<String, Samples> results = test.run(users, seconds, warmup, think, mix);
+            print(results, seconds);
+            System.out.println("\nServer metrics: " + test.execute(test.get("/api/metrics")).body);
+        }
+    }
+
+    // One customer account per virtual user, and enough stock that checkouts measure the path, not sell-outs
+    private static void prepareData(Connection conn, int users) throws Exception {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE products SET stock_quantity = 1000000");
+        }
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO users (username, first_name, last_name, email, "
+                + "password, phone_number, role) VALUES (?, 'Load', 'Tester', ?, ?, '012-0000000', 'CUSTOMER')")) {
+            for (int i = 1; i <= users; i++) {
+                ps.setString(1, "vu" + i);
+                ps.setString(2, "vu" + i + "@load.test");
+                ps.setString(3, PASSWORD);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    Map<String, Samples> run(int users, int seconds, int warmup, int think, Map<String, Integer> mix) throws Exception {
+        List<Map<String, Samples>> perUser = new ArrayList<>();
+        try (ExecutorService vus = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 1; i <= users; i++) {
+                Map<String, Samples> samples = new HashMap<>();
+                perUser.add(samples);
+                String username = "vu" + i;
+                vus.submit(() -> virtualUser(username, mix, think, samples));
+            }
+            Thread.sleep(warmup * 1000L);
+            for (Map<String, Samples> samples : perUser) {
+                synchronized (samples) {
+                    samples.clear();
+                }
+            }
+            recording = true;
+            Thread.sleep(seconds * 1000L);
+            recording = false;
+            running = false;
+        }
+
+        Map<String, Samples> merged = new TreeMap<>();
+        for (Map<String, Samples> samples : perUser) {
+            synchronized (samples) {
+                samples.forEach((endpoint, s) -> merged.computeIfAbsent(endpoint, k -> new Samples()).addAll(s));
+            }
+        }
+        return merged;
+    }
+
+    private Void virtualUser(String username, Map<String, Integer> mix, int think, Map<String, Samples> samples) {
+        User user = new User(username, samples);
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        while (running) {
+            int pick = ThreadLocalRandom.current().nextInt(total);
+            String journey = null;
+            for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+                pick -= entry.getValue();
+                if (pick < 0) {
+                    journey = entry.getKey();
+                    break;
+                }
+            }
+            try {
+                switch (journey) {
+                    case "browse" -> browse(user);
+                    case "checkout" -> checkout(user);
+                    case "rate" -> rate(user);
+                    case "admin" -> admin(user);
+                    default -> admin(user);
+                }
+                if (think > 0) Thread.sleep(ThreadLocalRandom.current().nextInt(2 * think + 1));
+            } catch (InterruptedException e) {
+                return null;
+            } catch (Exception e) {
+                // Transport failures are already counted as errors; keep the user going
+            }
+        }
+        return null;
+    }
+
+    // Type-ahead prefixes and whole words
+    private static final List<String> SEARCHES = List.of("choc", "cake", "pand", "cheese", "durian", "bread");
+
+    private void browse(User user) throws Exception {
+        int productId = 1 + ThreadLocalRandom.current().nextInt(productCount);
+        user.call("GET /api/products", get("/api/products"));
+        user.call("GET /api/categories", get("/api/categories"));
+        String query = SEARCHES.get(ThreadLocalRandom.current().nextInt(SEARCHES.size()));
+        user.call("GET /api/products/search", get("/api/products/search?q=" + query));
+        user.call("GET /api/feedback/ratings", get("/api/feedback/ratings"));
+        user.call("GET /api/products/{id}", get("/api/products/" + productId));
+        user.call("GET /api/feedback/summary/{id}", get("/api/feedback/summary/" + productId));
+    }
+
+    private void checkout(User user) throws Exception {
+        login(user);
+        if (user.id == 0) return;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        JsonArray items = new JsonArray();
+        double total = 0;
+        int lines = 1 + random.nextInt(3);
+        for (int i = 0; i < lines; i++) {
+            JsonObject item = new JsonObject();
+            int quantity = 1 + random.nextInt(3);
+            item.addProperty("productId", 1 + random.nextInt(productCount));
+            item.addProperty("quantity", quantity);
+            item.addProperty("price", 10.0);
+            items.add(item);
+            total += 10.0 * quantity;
+        }
+        JsonObject order = new JsonObject();
+        order.addProperty("userId", user.id);
+        order.addProperty("totalAmount", total);
+        String pickupDate = LocalDate.now().plusDays(1).toString();
+        Response slots = user.call("GET /api/pickup-slots", get("/api/pickup-slots?date=" + pickupDate));
+        if (slots.status != 200) return;
+        List<String> open = new ArrayList<>();
+        for (JsonElement s : JsonParser.parseString(slots.body).getAsJsonObject().getAsJsonArray("slots")) {
+            if (s.getAsJsonObject().get("available").getAsInt() > 0) {
+                open.add(s.getAsJsonObject().get("time").getAsString());
+            }
+        }
+        if (open.isEmpty()) return;
+        order.addProperty("pickupDate", pickupDate);
+        order.addProperty("pickupTime", open.get(random.nextInt(open.size())));
+        order.addProperty("paymentMethod", "CASH");
+        order.add("items", items);
+        user.call("POST /api/orders", send("POST", "/api/orders", order));
+    }
+
+    private void rate(User user) throws Exception {
+        login(user);
+        if (user.id == 0) return;
+        Response history = user.call("GET /api/orders?userId", get("/api/orders?userId=" + user.id));
+        if (history.status != 200) return;
+        for (JsonElement o : JsonParser.parseString(history.body).getAsJsonArray()) {
+            JsonObject order = o.getAsJsonObject();
+            for (JsonElement i : order.getAsJsonArray("items")) {
+                JsonObject item = i.getAsJsonObject();
+                if (item.has("rating")) continue;
+                JsonObject review = new JsonObject();
+                review.addProperty("userId", user.id);
+                review.addProperty("productId", item.get("productId").getAsInt());
+                review.addProperty("orderId", order.get("orderId").getAsInt());
+                review.addProperty("rating", 1 + ThreadLocalRandom.current().nextInt(5));
+                review.addProperty("comment", "Tried it during the lunch rush");
+                user.call("POST /api/feedback", send("POST", "/api/feedback", review));
+                return;
+            }
+        }
+    }
+
+    private static final List<String> STATUS_FLOW = List.of("PENDING", "PREPARING", "READY_FOR_PICKUP", "COMPLETED");
+
+    private void admin(User user) throws Exception {
+        Response page = user.call("GET /api/orders?all", get("/api/orders?all=true&limit=50"));
+        if (page.status != 200) return;
+        for (JsonElement o : JsonParser.parseString(page.body).getAsJsonArray()) {
+            JsonObject order = o.getAsJsonObject();
+            int step = STATUS_FLOW.indexOf(order.get("status").getAsString());
+            if (step < 0 || step == STATUS_FLOW.size() - 1) continue;
+            JsonObject update = new JsonObject();
+            update.addProperty("status", STATUS_FLOW.get(step + 1));
+            user.call("PUT /api/orders/{id}", send("PUT", "/api/orders/" + order.get("orderId").getAsInt(), update));
+            return;
+        }
+    }
+
+    private void login(User user) throws Exception {
+        if (user.id != 0) return;
+        JsonObject body = new JsonObject();
+        body.addProperty("username", user.username);
+        body.addProperty("password", PASSWORD);
+        Response response = user.call("POST /api/login", send("POST", "/api/login", body));
+        if (response.status == 200) {
+            user.id = JsonParser.parseString(response.body).getAsJsonObject().get("id").getAsInt();
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Accept-Encoding", "gzip")
+                .timeout(Duration.ofSeconds(30))
+                .GET().build();
+    }
+
+    private HttpRequest send(String method, String path, JsonObject body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .header("Accept-Encoding", "gzip")
+                .timeout(Duration.ofSeconds(30))
+                .method(method, HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    private Response execute(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        byte[] body = response.body();
+        if (response.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false)) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = in.readAllBytes();
+            }
+        }
+        return new Response(response.statusCode(), new String(body, StandardCharsets.UTF_8));
+    }
+
+    private final class User {
+        final String username;
+        final Map<String, Samples> samples;
+        int id;
+
+        User(String username, Map<String, Samples> samples) {
+            this.username = username;
+            this.samples = samples;
+        }
+
+        Response call(String endpoint, HttpRequest request) throws IOException, InterruptedException {
+            long start = System.nanoTime();
+            Response response;
+            try {
+                response = execute(request);
+            } catch (IOException e) {
+                record(endpoint, System.nanoTime() - start, true);
+                throw e;
+            }
+            record(endpoint, System.nanoTime() - start, response.status >= 400);
+            return response;
+        }
+
+        private void record(String endpoint, long nanos, boolean error) {
+            if (!recording) return;
+            synchronized (samples) {
+                samples.computeIfAbsent(endpoint, k -> new Samples()).add(nanos, error);
+            }
+        }
+    }
+
+    record Response(int status, String body) {
+    }
+
+    static final class Samples {
+        private long[] nanos = new long[256];
+        private int size;
+        private int errors;
+
+        void add(long latency, boolean error) {
+            if (size == nanos.length) nanos = Arrays.copyOf(nanos, size * 2);
+            nanos[size++] = latency;
+            if (error) errors++;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) add(other.nanos[i], false);
+            errors += other.errors;
+        }
+
+        double percentileMs(double p) {
+            if (size == 0) return 0;
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p / 100.0 * size) - 1;
+            return sorted[Math.max(0, Math.min(index, size - 1))] / 1e6;
+        }
+    }
+
+    private static void print(Map<String, Samples> results, int seconds) {
+        System.out.printf("%n%-32s %8s %7s %8s %9s %9s %9s%n", "Endpoint", "Requests", "Err %", "Req/s",
+                "p50 ms", "p99 ms", "max ms");
+        long requests = 0;
+        long errors = 0;
+        for (Map.Entry<String, Samples> entry : results.entrySet()) {
+            Samples s = entry.getValue();
+            requests += s.size;
+            errors += s.errors;
+            System.out.printf("%-32s %8d %6.2f%% %8.1f %9.2f %9.2f %9.2f%n", entry.getKey(), s.size,
+                    s.size == 0 ? 0 : 100.0 * s.errors / s.size, (double) s.size / seconds,
+                    s.percentileMs(50), s.percentileMs(99), s.percentileMs(100));
+        }
+        System.out.printf("%-32s %8d %6.2f%% %8.1f%n", "TOTAL", requests,
+                requests == 0 ? 0 : 100.0 * errors / requests, (double) requests / seconds);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.split(":");
+            String journey = kv[0].trim();
+            if (!List.of("browse", "checkout", "rate", "admin").contains(journey)) {
+                throw new IllegalArgumentException("Unknown journey in mix: " + journey);
+            }
+            mix.put(journey, Integer.parseInt(kv[1].trim()));
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,118 @@
+package com.fivestarsbakery.bench;
+
+import com.fivestarsbakery.dao.OrderDAO;
+import com.fivestarsbakery.model.Order;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * Peak heap and allocation for one user's order history, written the old way
+ * (List<Order> + gson.toJson into one String) and the streaming way (JsonWriter per order).
+ *
+ * Usage: OrderHistoryMemoryBench <stream|materialize> [orders, default 1000000]
+ * Run each mode in its own JVM, ideally with the same -Xmx, e.g.
+ *   mvn -Pbench test-compile exec:exec -Dbench.main=com.fivestarsbakery.bench.OrderHistoryMemoryBench \
+ *       -Dbench.args="stream 1000000" -Dbench.jvmArgs=-Xmx512m
+ * The dataset is seeded once into target/bench-db and reused while the order count matches.
+ */
+public class OrderHistoryMemoryBench {
+
+    private static final int USER_ID = 2;
+    private static final int ITEMS_PER_ORDER = 3;
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "stream";
+        int orders = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        String url = BenchDatabase.fileUrl("order-history");
+        try (Connection conn = BenchDatabase.connect(url)) {
+            if (!hasOrders(conn, orders)) {
+                System.out.println("Seeding " + orders + " orders...");
+                long t = System.nanoTime();
+                BenchDatabase.reset(conn);
+                BenchDatabase.seedOrders(conn, USER_ID, orders, ITEMS_PER_ORDER);
+                System.out.printf("Seeded in %.1f s%n", (System.nanoTime() - t) / 1e9);
+            }
+        }
+        BenchDatabase.use(url);
+
+        OrderDAO dao = new OrderDAO();
+        Gson gson = new Gson();
+        CountingWriter sink = new CountingWriter();
+
+        System.gc();
+        resetPeaks();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+
+        if (mode.equals("materialize")) {
+            List<Order> history = dao.getOrdersByUserId(USER_ID);
+            sink.write(gson.toJson(history));
+        } else {
+            JsonWriter writer = new JsonWriter(sink);
+            writer.beginArray();
+            dao.streamOrdersByUserId(USER_ID, order -> gson.toJson(order, Order.class, writer));
+            writer.endArray();
+            writer.flush();
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf("mode=%s orders=%d json=%d chars time=%d ms peakHeap=%d MB allocated=%d MB%n",
+                mode, orders, sink.count, elapsedMs, peakHeap() >> 20, allocated >> 20);
+        com.fivestarsbakery.util.DBConnection.shutdown();
+    }
+
+    private static boolean hasOrders(Connection conn, int orders) {
+        try {
+            return BenchDatabase.count(conn, "orders") == orders;
+        } catch (java.sql.SQLException e) {
+            return false;
+        }
+    }
+
+    private static void resetPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    // Stands in for the servlet response: counts what would go on the wire and keeps nothing
+    private static class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str) {
+            count += str.length();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
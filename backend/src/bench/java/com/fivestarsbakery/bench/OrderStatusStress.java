@@ -0,0 +1,253 @@
+package com.fivestarsbakery.bench;
+
+import com.fivestarsbakery.dao.KitchenPlan;
+import com.fivestarsbakery.dao.OrderDAO;
+import com.fivestarsbakery.dao.PickupSlots;
+import com.fivestarsbakery.dao.StockLedger;
+import com.fivestarsbakery.model.Order;
+import com.fivestarsbakery.model.OrderItem;
+import com.fivestarsbakery.model.OrderStatus;
+import com.fivestarsbakery.util.DBConnection;
+import com.fivestarsbakery.util.PickupTimes;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admins racing on the same orders: many threads push random single and bulk status changes
+ * (cancellations included) through OrderDAO at the newest few orders, while new orders keep arriving
+ * so there is always something left to race on. Afterwards the run is checked:
+ * - every change that reported UPDATED is an edge of OrderStatus's graph
+ * - no order left any status twice, and none was cancelled twice
+ * - each order's final status is where its reported changes lead
+ * - stock equals the starting stock minus the items of the orders that are not cancelled,
+ *   i.e. every cancellation restored stock exactly once
+ * - the pickup slot all orders share has a seat taken for each order that is not cancelled
+ * - the kitchen plan, loaded before the race and kept up to date since, matches the orders that are not cancelled
+ * Exits with status 1 if anything does not hold. H2 occasionally hands out a duplicate identity under
+ * concurrent inserts; those placements fail, roll back and are simply left out of the race.
+ *
+ * Arguments (key=value, all optional): orders=50 threads=16 seconds=10 ledger=false
+ * orders is the size of the window of newest orders the threads pick from.
+ *
+ *   mvn -Pbench test-compile exec:exec -Dbench.main=com.fivestarsbakery.bench.OrderStatusStress \
+ *       -Dbench.args="threads=32 seconds=30"
+ */
+public class OrderStatusStress {
+
+    private static final int PRODUCT_ID = 1;
+    private static final int CUSTOMER_ID = 2;
+    private static final int STARTING_STOCK = 1_000_000;
+    private static final int SLOT_CAPACITY = 1_000_000;
+    private static final String PICKUP_TIME = "10:00 AM";
+    private static final OrderStatus[] TARGETS = OrderStatus.values();
+
+    record Move(int orderId, String from, OrderStatus to) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        int orderCount = Integer.parseInt(options.getOrDefault("orders", "50"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        boolean ledger = Boolean.parseBoolean(options.getOrDefault("ledger", "false"));
+
+        String url = BenchDatabase.memoryUrl("status-stress");
+        try (Connection conn = BenchDatabase.connect(url);
+             Statement stmt = conn.createStatement()) {
+            BenchDatabase.reset(conn);
+            stmt.executeUpdate("UPDATE products SET stock_quantity = " + STARTING_STOCK + " WHERE product_id = " + PRODUCT_ID);
+        }
+        BenchDatabase.use(url);
+        System.setProperty("STOCK_LEDGER_ENABLED", String.valueOf(ledger));
+        System.setProperty("PICKUP_SLOT_CAPACITY", String.valueOf(SLOT_CAPACITY));
+
+        OrderDAO orderDAO = new OrderDAO();
+        Map<Integer, Integer> quantities = new ConcurrentHashMap<>();
+        List<Integer> orderIds = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < orderCount; i++) {
+            placeOrder(orderDAO, orderIds, quantities);
+        }
+        KitchenPlan.getInstance().getPlan(pickupDate(), pickupDate(), null);
+
+        ConcurrentLinkedQueue<Move> moves = new ConcurrentLinkedQueue<>();
+        Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        LongAdder calls = new LongAdder();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        System.out.printf("%nOrder status stress: %d orders, %d threads, %ds, stock ledger %s%n",
+                orderCount, threads, seconds, ledger ? "on" : "off");
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    if (random.nextInt(4) == 0) {
+                        placeOrder(orderDAO, orderIds, quantities);
+                    }
+                    OrderStatus target = TARGETS[random.nextInt(TARGETS.length)];
+                    List<Integer> ids = new ArrayList<>();
+                    int count = random.nextBoolean() ? 1 : 2 + random.nextInt(8);
+                    int newest = orderIds.size();
+                    for (int i = 0; i < count; i++) {
+                        ids.add(orderIds.get(newest - 1 - random.nextInt(orderCount)));
+                    }
+                    List<OrderDAO.StatusChange> results = ids.size() == 1
+                            ? single(orderDAO.updateOrderStatus(ids.get(0), target))
+                            : orderDAO.updateOrderStatuses(ids, target);
+                    calls.increment();
+                    if (results == null) {
+                        outcomes.computeIfAbsent("FAILED", k -> new LongAdder()).increment();
+                        continue;
+                    }
+                    for (OrderDAO.StatusChange change : results) {
+                        outcomes.computeIfAbsent(change.outcome, k -> new LongAdder()).increment();
+                        if (change.outcome.equals(OrderDAO.StatusChange.UPDATED)) {
+                            moves.add(new Move(change.orderId, change.previousStatus, target));
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        StockLedger.shutdown();
+
+        List<String> violations = check(moves, quantities);
+        Map<String, Long> summary = new TreeMap<>();
+        outcomes.forEach((outcome, n) -> summary.put(outcome, n.sum()));
+        System.out.println("Orders: " + orderIds.size() + ", calls: " + calls.sum() + ", outcomes: " + summary);
+        DBConnection.shutdown();
+
+        if (violations.isEmpty()) {
+            System.out.println("Invariants hold: " + moves.size() + " transitions, stock restored exactly once per cancellation");
+        } else {
+            violations.stream().limit(20).forEach(v -> System.out.println("VIOLATION: " + v));
+            System.out.println(violations.size() + " violation(s)");
+            System.exit(1);
+        }
+    }
+
+    private static void placeOrder(OrderDAO orderDAO, List<Integer> orderIds, Map<Integer, Integer> quantities) {
+        int quantity = 1 + ThreadLocalRandom.current().nextInt(3);
+        Order order = newOrder(quantity);
+        if (orderDAO.createOrder(order)) {
+            quantities.put(order.getOrderId(), quantity);
+            orderIds.add(order.getOrderId());
+        }
+    }
+
+    private static List<OrderDAO.StatusChange> single(OrderDAO.StatusChange change) {
+        return change == null ? null : List.of(change);
+    }
+
+    private static List<String> check(ConcurrentLinkedQueue<Move> moves, Map<Integer, Integer> quantities) throws Exception {
+        List<String> violations = new ArrayList<>();
+        Map<Integer, Set<OrderStatus>> left = new HashMap<>();
+        Map<Integer, Set<OrderStatus>> reached = new HashMap<>();
+        for (Move move : moves) {
+            OrderStatus from = OrderStatus.parse(move.from());
+            if (from == null || !from.canMoveTo(move.to())) {
+                violations.add("order " + move.orderId() + " moved " + move.from() + " -> " + move.to());
+                continue;
+            }
+            if (!left.computeIfAbsent(move.orderId(), k -> EnumSet.noneOf(OrderStatus.class)).add(from)) {
+                violations.add("order " + move.orderId() + " left " + from + " twice");
+            }
+            if (!reached.computeIfAbsent(move.orderId(), k -> EnumSet.noneOf(OrderStatus.class)).add(move.to())) {
+                violations.add("order " + move.orderId() + " reached " + move.to() + " twice");
+            }
+        }
+
+        long expectedStock = STARTING_STOCK;
+        int expectedSeats = 0;
+        try (Connection conn = DBConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT order_id, status FROM orders")) {
+                while (rs.next()) {
+                    int orderId = rs.getInt("order_id");
+                    OrderStatus status = OrderStatus.valueOf(rs.getString("status"));
+                    // The status reached and never left again (PENDING if nothing moved it)
+                    Set<OrderStatus> ends = EnumSet.of(OrderStatus.PENDING);
+                    ends.addAll(reached.getOrDefault(orderId, Set.of()));
+                    ends.removeAll(left.getOrDefault(orderId, Set.of()));
+                    if (!ends.equals(EnumSet.of(status))) {
+                        violations.add("order " + orderId + " is " + status + " but its changes lead to " + ends);
+                    }
+                    if (status != OrderStatus.CANCELLED) {
+                        expectedStock -= quantities.get(orderId);
+                        expectedSeats++;
+                    }
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT stock_quantity FROM products WHERE product_id = " + PRODUCT_ID)) {
+                rs.next();
+                long stock = rs.getLong(1);
+                System.out.println("Stock: " + stock + ", expected " + expectedStock);
+                if (stock != expectedStock) {
+                    violations.add("stock is " + stock + ", expected " + expectedStock);
+                }
+            }
+        }
+
+        int seats = PickupSlots.getInstance().available(pickupDate()).stream()
+                .filter(slot -> slot.time.equals(PICKUP_TIME))
+                .mapToInt(slot -> SLOT_CAPACITY - slot.available)
+                .findFirst().orElse(-1);
+        System.out.println("Pickup slot seats: " + seats + ", expected " + expectedSeats);
+        if (seats != expectedSeats) {
+            violations.add("pickup slot has " + seats + " seats taken, expected " + expectedSeats);
+        }
+
+        long planned = KitchenPlan.getInstance().getPlan(pickupDate(), pickupDate(), null).totals.stream()
+                .mapToLong(line -> line.quantity).sum();
+        long expectedPlanned = STARTING_STOCK - expectedStock;
+        System.out.println("Kitchen plan: " + planned + ", expected " + expectedPlanned);
+        if (planned != expectedPlanned) {
+            violations.add("kitchen plan has " + planned + " to bake, expected " + expectedPlanned);
+        }
+        return violations;
+    }
+
+    private static LocalDate pickupDate() {
+        return PickupTimes.now().toLocalDate().plusDays(1);
+    }
+
+    private static Order newOrder(int quantity) {
+        OrderItem item = new OrderItem();
+        item.setProductId(PRODUCT_ID);
+        item.setQuantity(quantity);
+        List<OrderItem> items = new ArrayList<>();
+        items.add(item);
+
+        Order order = new Order();
+        order.setUserId(CUSTOMER_ID);
+        order.setPaymentMethod("CASH");
+        order.setPickupDate(pickupDate().toString());
+        order.setPickupTime(PICKUP_TIME);
+        order.setItems(items);
+        return order;
+    }
+}
@@ -0,0 +1,59 @@
+package com.fivestarsbakery.bench;
+
+import com.fivestarsbakery.util.PickupTimes;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row cost of the pickup date/time layer.
+ * legacy* reproduce the SimpleDateFormat-per-call code OrderDAO used before; current* use PickupTimes.
+ * Run with -prof gc to see allocation per row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PickupTimeBenchmark {
+
+    private final String date = "2026-03-14";
+    private final String time = "01:00 PM";
+    private Timestamp timestamp;
+    private LocalDateTime localDateTime;
+
+    @Setup
+    public void setUp() {
+        localDateTime = LocalDateTime.of(2026, 3, 14, 13, 0);
+        timestamp = Timestamp.valueOf(localDateTime);
+    }
+
+    // One order row: date and time columns
+    @Benchmark
+    public void legacyFormat(Blackhole bh) {
+        bh.consume(new SimpleDateFormat("yyyy-MM-dd").format(timestamp));
+        bh.consume(new SimpleDateFormat("hh:mm a").format(timestamp));
+    }
+
+    @Benchmark
+    public void currentFormat(Blackhole bh) {
+        bh.consume(PickupTimes.formatDate(localDateTime));
+        bh.consume(PickupTimes.formatTime(localDateTime));
+    }
+
+    @Benchmark
+    public Timestamp legacyParse() throws ParseException {
+        return new Timestamp(new SimpleDateFormat("yyyy-MM-dd hh:mm a").parse(date + " " + time).getTime());
+    }
+
+    @Benchmark
+    public LocalDateTime currentParse() {
+        return PickupTimes.parse(date, time);
+    }
+}
@@ -0,0 +1,61 @@
+package com.fivestarsbakery.bench;
+
+import com.fivestarsbakery.model.Order;
+import com.fivestarsbakery.model.Product;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson serialization of the response bodies the servlets build:
+ * the product list, an admin page of orders and a long customer history (items nested).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({ "50", "2000" })
+    public int orders;
+
+    private final Gson gson = new Gson();
+    private List<Product> products;
+    private List<Order> orderList;
+
+    @Setup
+    public void setUp() {
+        products = SyntheticData.products(120);
+        orderList = SyntheticData.orders(orders, 4, products);
+    }
+
+    @Benchmark
+    public String products() {
+        return gson.toJson(products);
+    }
+
+    @Benchmark
+    public String ordersToString() {
+        return gson.toJson(orderList);
+    }
+
+    // What OrderServlet does for order history: one order at a time through a JsonWriter
+    @Benchmark
+    public int ordersStreamed() throws Exception {
+        StringWriter out = new StringWriter(64 * 1024);
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginArray();
+        for (Order order : orderList) {
+            gson.toJson(order, Order.class, writer);
+        }
+        writer.endArray();
+        writer.flush();
+        return out.getBuffer().length();
+    }
+}
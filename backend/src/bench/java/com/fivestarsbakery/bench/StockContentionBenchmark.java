@@ -0,0 +1,102 @@
+package com.fivestarsbakery.bench;
+
+import com.fivestarsbakery.dao.OrderDAO;
+import com.fivestarsbakery.dao.StockLedger;
+import com.fivestarsbakery.model.Order;
+import com.fivestarsbakery.model.OrderItem;
+import com.fivestarsbakery.util.DBConnection;
+import com.fivestarsbakery.util.PickupTimes;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Flash sale on one product: many threads checking out the same hot item at once,
+ * through OrderDAO.createOrder on the H2 stand-in.
+ * - sql: every checkout locks the product row (ProductDAO.reserveStock)
+ * - ledger: checkouts are admitted by StockLedger and stock is written back in batches
+ * Each mode runs in its own fork, because STOCK_LEDGER_ENABLED is read once per JVM.
+ * Teardown checks that stock plus sold units still adds up to the starting stock. H2 occasionally hands out
+ * a duplicate identity under this much insert concurrency; those checkouts fail, are rolled back and are counted.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class StockContentionBenchmark {
+
+    private static final int HOT_PRODUCT_ID = 1;
+    private static final int CUSTOMER_ID = 2;
+    private static final int STARTING_STOCK = 100_000_000;
+
+    @Param({ "sql", "ledger" })
+    public String mode;
+
+    private OrderDAO orderDAO;
+    private final LongAdder failed = new LongAdder();
+
+    @Setup
+    public void setUp() throws Exception {
+        String url = BenchDatabase.memoryUrl("stock-" + mode);
+        try (Connection conn = BenchDatabase.connect(url);
+             Statement stmt = conn.createStatement()) {
+            BenchDatabase.reset(conn);
+            stmt.executeUpdate("UPDATE products SET stock_quantity = " + STARTING_STOCK + " WHERE product_id = " + HOT_PRODUCT_ID);
+        }
+        BenchDatabase.use(url);
+        System.setProperty("STOCK_LEDGER_ENABLED", String.valueOf("ledger".equals(mode)));
+        // Every checkout shares one pickup slot; only stock should limit them
+        System.setProperty("PICKUP_SLOT_CAPACITY", String.valueOf(Integer.MAX_VALUE));
+        orderDAO = new OrderDAO();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        StockLedger.shutdown();
+        try (Connection conn = DBConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT p.stock_quantity, "
+                     + "(SELECT COALESCE(SUM(quantity), 0) FROM order_items WHERE product_id = p.product_id) "
+                     + "FROM products p WHERE p.product_id = " + HOT_PRODUCT_ID)) {
+            rs.next();
+            long stock = rs.getLong(1);
+            long sold = rs.getLong(2);
+            System.out.println("\n[" + mode + "] sold " + sold + ", stock left " + stock
+                    + (stock + sold == STARTING_STOCK ? " (consistent)" : " (MISMATCH)")
+                    + ", failed checkouts " + failed.sum());
+        }
+        DBConnection.shutdown();
+    }
+
+    @Benchmark
+    public boolean checkoutHotItem() {
+        boolean placed = orderDAO.createOrder(newOrder());
+        if (!placed) failed.increment();
+        return placed;
+    }
+
+    private static Order newOrder() {
+        OrderItem item = new OrderItem();
+        item.setProductId(HOT_PRODUCT_ID);
+        item.setQuantity(1);
+        List<OrderItem> items = new ArrayList<>();
+        items.add(item);
+
+        Order order = new Order();
+        order.setUserId(CUSTOMER_ID);
+        order.setPaymentMethod("CASH");
+        order.setPickupDate(PickupTimes.now().toLocalDate().plusDays(1).toString());
+        order.setPickupTime("10:00 AM");
+        order.setItems(items);
+        return order;
+    }
+}
@@ -0,0 +1,69 @@
+package com.fivestarsbakery.bench;
+
+import com.fivestarsbakery.model.Order;
+import com.fivestarsbakery.model.OrderItem;
+import com.fivestarsbakery.model.Product;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic catalog and order fixtures shaped like the seeded bakery data.
+ */
+public final class SyntheticData {
+
+    private static final String[] CATEGORIES = { "Cakes", "Breads", "Pastries", "Cookies", "Beverages" };
+    private static final String[] STATUSES = { "PENDING", "PREPARING", "READY", "COMPLETED", "CANCELLED" };
+
+    private SyntheticData() {
+    }
+
+    public static List<Product> products(int count) {
+        Random random = new Random(42);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String category = CATEGORIES[i % CATEGORIES.length];
+            products.add(new Product(i, category + " Special #" + i,
+                    "Freshly baked every morning with premium butter and locally sourced flour. Item " + i + ".",
+                    "Flour, Butter, Sugar, Eggs, Milk, Vanilla, Salt",
+                    5 + random.nextInt(9500) / 100.0, random.nextInt(50), category,
+                    "/images/products/" + category.toLowerCase() + "-" + i + ".jpg"));
+        }
+        return products;
+    }
+
+    public static List<Order> orders(int count, int itemsPerOrder, List<Product> catalog) {
+        Random random = new Random(7);
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Order order = new Order();
+            order.setOrderId(i);
+            order.setUserId(1 + random.nextInt(200));
+            order.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+            order.setPickupDate("2026-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10));
+            order.setPickupTime("1" + random.nextInt(8) + ":00");
+            order.setCreatedAt(new Timestamp(1_767_225_600_000L + i * 60_000L));
+            order.setShippingAddress("Self Pickup");
+
+            List<OrderItem> items = new ArrayList<>(itemsPerOrder);
+            BigDecimal total = BigDecimal.ZERO;
+            for (int j = 0; j < itemsPerOrder; j++) {
+                Product p = catalog.get(random.nextInt(catalog.size()));
+                OrderItem item = new OrderItem(p.getId(), 1 + random.nextInt(3), BigDecimal.valueOf(p.getPrice()));
+                item.setItemId(i * itemsPerOrder + j);
+                item.setOrderId(i);
+                item.setProductName(p.getName());
+                item.setImageUrl(p.getImageUrl());
+                items.add(item);
+                total = total.add(item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+            }
+            order.setItems(items);
+            order.setTotalAmount(total);
+            orders.add(order);
+        }
+        return orders;
+    }
+}
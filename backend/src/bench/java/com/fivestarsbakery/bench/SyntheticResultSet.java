@@ -0,0 +1,92 @@
+package com.fivestarsbakery.bench;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A forward-only, in-memory ResultSet over prepared rows, for timing row mapping without a driver.
+ * Only the getters the DAOs call are implemented; anything else throws.
+ * Every benchmark run dispatches through the same proxy, so results are comparable across runs,
+ * not with a real driver.
+ */
+public final class SyntheticResultSet {
+
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final List<Object[]> rows;
+
+    public SyntheticResultSet(String[] columnNames, List<Object[]> rows) {
+        for (int i = 0; i < columnNames.length; i++) {
+            columns.put(columnNames[i].toLowerCase(Locale.ROOT), i);
+        }
+        this.rows = rows;
+    }
+
+    /**
+     * A fresh cursor positioned before the first row.
+     */
+    public ResultSet open() {
+        Cursor cursor = new Cursor();
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                (proxy, method, args) -> cursor.invoke(method.getName(), args));
+    }
+
+    private final class Cursor {
+        private int row = -1;
+        private boolean lastNull;
+
+        Object invoke(String name, Object[] args) throws SQLException {
+            switch (name) {
+                case "next":
+                    return ++row < rows.size();
+                case "close":
+                    return null;
+                case "isClosed":
+                    return false;
+                case "wasNull":
+                    return lastNull;
+                case "getInt":
+                    Number i = (Number) value(args[0]);
+                    return i == null ? 0 : i.intValue();
+                case "getLong":
+                    Number l = (Number) value(args[0]);
+                    return l == null ? 0L : l.longValue();
+                case "getDouble":
+                    Number d = (Number) value(args[0]);
+                    return d == null ? 0.0 : d.doubleValue();
+                case "getBigDecimal":
+                    Object b = value(args[0]);
+                    return b == null || b instanceof BigDecimal ? b : new BigDecimal(b.toString());
+                case "getString":
+                    Object s = value(args[0]);
+                    return s == null ? null : s.toString();
+                case "getTimestamp":
+                    return (Timestamp) value(args[0]);
+                case "getObject":
+                    return value(args[0]);
+                default:
+                    throw new SQLException("SyntheticResultSet does not support " + name);
+            }
+        }
+
+        private Object value(Object column) throws SQLException {
+            int index;
+            if (column instanceof Integer) {
+                index = (Integer) column - 1;
+            } else {
+                Integer found = columns.get(((String) column).toLowerCase(Locale.ROOT));
+                if (found == null) throw new SQLException("Unknown column " + column);
+                index = found;
+            }
+            Object value = rows.get(row)[index];
+            lastNull = value == null;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.fivestarsbakery.controller;
+
+import com.fivestarsbakery.dao.FeedbackDAO.ProductRating;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FeedbackServlet's ratings JSON assembly: building the JsonObject tree, and tree plus serialization,
+ * which is what a cache miss on /api/feedback/ratings costs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RatingsJsonBenchmark {
+
+    @Param({ "120", "2000" })
+    public int products;
+
+    private final Gson gson = new Gson();
+    private Map<Integer, ProductRating> ratings;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(3);
+        ratings = new LinkedHashMap<>();
+        for (int id = 1; id <= products; id++) {
+            ratings.put(id, new ProductRating(1 + random.nextDouble() * 4, 1 + random.nextInt(400)));
+        }
+    }
+
+    @Benchmark
+    public Object buildTree() {
+        return FeedbackServlet.buildRatingsJson(ratings);
+    }
+
+    @Benchmark
+    public String buildAndSerialize() {
+        return gson.toJson(FeedbackServlet.buildRatingsJson(ratings));
+    }
+}
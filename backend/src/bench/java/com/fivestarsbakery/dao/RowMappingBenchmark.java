@@ -0,0 +1,93 @@
+package com.fivestarsbakery.dao;
+
+import com.fivestarsbakery.bench.SyntheticData;
+import com.fivestarsbakery.bench.SyntheticResultSet;
+import com.fivestarsbakery.model.Order;
+import com.fivestarsbakery.model.OrderItem;
+import com.fivestarsbakery.model.Product;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row mapping without a database: ProductDAO.mapProduct over a catalog-sized result,
+ * and OrderDAO's order-grouping loop over one admin page and one long customer history.
+ * Lives in the dao package to reach the package-private mappers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowMappingBenchmark {
+
+    private static final String[] PRODUCT_COLUMNS = { "product_id", "name", "description", "ingredients",
+            "price", "stock_quantity", "category", "image_url" };
+    private static final String[] ORDER_COLUMNS = { "order_id", "user_id", "total_amount", "status",
+            "pickup_time", "created_at", "payment_method", "username", "item_id", "product_id", "quantity",
+            "price_at_purchase", "product_name", "image_url", "rating", "review_comment" };
+
+    @Param({ "50", "2000" })
+    public int orders;
+
+    private SyntheticResultSet productRows;
+    private SyntheticResultSet orderRows;
+
+    @Setup
+    public void setUp() {
+        List<Product> catalog = SyntheticData.products(120);
+        List<Object[]> rows = new ArrayList<>();
+        for (Product p : catalog) {
+            rows.add(new Object[] { p.getId(), p.getName(), p.getDescription(), p.getIngredients(),
+                    p.getPrice(), p.getStock(), p.getCategory(), p.getImageUrl() });
+        }
+        productRows = new SyntheticResultSet(PRODUCT_COLUMNS, rows);
+
+        rows = new ArrayList<>();
+        for (Order o : SyntheticData.orders(orders, 4, catalog)) {
+            LocalDateTime pickup = o.getCreatedAt().toLocalDateTime().plusDays(1);
+            for (OrderItem item : o.getItems()) {
+                boolean rated = item.getItemId() % 3 == 0;
+                rows.add(new Object[] { o.getOrderId(), o.getUserId(), o.getTotalAmount(), o.getStatus(),
+                        pickup, o.getCreatedAt(), "CASH", "user" + o.getUserId(), item.getItemId(),
+                        item.getProductId(), item.getQuantity(), item.getPrice(), item.getProductName(),
+                        item.getImageUrl(), rated ? 5 : null, rated ? "Lovely, will order again" : null });
+            }
+        }
+        orderRows = new SyntheticResultSet(ORDER_COLUMNS, rows);
+    }
+
+    @Benchmark
+    public List<Product> mapProducts() throws Exception {
+        List<Product> products = new ArrayList<>();
+        try (ResultSet rs = productRows.open()) {
+            while (rs.next()) {
+                products.add(ProductDAO.mapProduct(rs));
+            }
+        }
+        return products;
+    }
+
+    @Benchmark
+    public List<Order> groupOrders() throws Exception {
+        List<Order> result = new ArrayList<>();
+        try (ResultSet rs = orderRows.open()) {
+            OrderDAO.readOrders(rs, true, result::add);
+        }
+        return result;
+    }
+
+    // Streaming path: each order is handed off and dropped, nothing is retained
+    @Benchmark
+    public void groupOrdersStreaming(Blackhole bh) throws Exception {
+        try (ResultSet rs = orderRows.open()) {
+            OrderDAO.readOrders(rs, false, bh::consume);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.fivestarsbakery.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A serialized JSON body ready to be written as-is, with its strong ETag.
+ * The ETag is derived from the bytes, so it is stable across restarts and instances;
+ * the gzip form is a different representation and has its own tag.
+ * The gzip form is computed on first use and then shared, so hot payloads are compressed once per version.
+ */
+public final class CachedJson {
+
+    private final long version;
+    private final long createdAt;
+    private final byte[] bytes;
+    private final String etag;
+    private final String gzipEtag;
+    private volatile byte[] gzipBytes;
+
+    CachedJson(long version, String json) {
+        this.version = version;
+        this.createdAt = System.currentTimeMillis();
+        this.bytes = json.getBytes(StandardCharsets.UTF_8);
+        String hash = sha256Prefix(bytes);
+        this.etag = "\"" + hash + "\"";
+        this.gzipEtag = "\"" + hash + "-gz\"";
+    }
+
+    private static String sha256Prefix(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder sb = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    // Shared, never modify
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getGzipEtag() {
+        return gzipEtag;
+    }
+
+    // Shared, never modify
+    public byte[] getGzipBytes() {
+        byte[] gz = gzipBytes;
+        if (gz == null) {
+            // Two threads may both compress the first time; the results are identical
+            gz = gzip(bytes);
+            gzipBytes = gz;
+        }
+        return gz;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,190 @@
+package com.fivestarsbakery.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the results of recent requests by client-supplied key, so a retried or double-submitted
+ * request gets the first result back instead of running again.
+ * - The first request with a key runs; duplicates arriving meanwhile wait for its result
+ * - Only successful results are kept: if the action throws, the key is forgotten so the client can retry
+ * - Entries expire after ttlMs, and the oldest are dropped once there are more than maxEntries;
+ *   an entry whose request is still running is never dropped
+ */
+public class IdempotencyStore<T> {
+
+    private final long ttlMs;
+    private final int maxEntries;
+    private final long waitMs;
+    private final ConcurrentHashMap<String, Entry<T>> entries = new ConcurrentHashMap<>();
+    // Keys of completed entries in completion order; all entries share one TTL, so the head is the next to expire.
+    // In-flight entries join when they complete, so eviction never sees them except through a stale slot
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public IdempotencyStore(long ttlMs, int maxEntries, long waitMs) {
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+        this.waitMs = waitMs;
+    }
+
+    /**
+     * Runs the action once per key. fingerprint identifies the request body: reusing a key for a
+     * different request throws KeyReusedException. A duplicate that waits longer than waitMs for the
+     * first one throws KeyInFlightException. An action failure reaches every waiter unchanged.
+     */
+    public Outcome<T> execute(String key, String fingerprint, Callable<T> action) throws Exception {
+        try {
+            return executeAsync(key, fingerprint, () -> {
+                try {
+                    return CompletableFuture.completedFuture(action.call());
+                } catch (Exception e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Same as execute() for an action that finishes later; nothing blocks while duplicates wait.
+     */
+    public CompletableFuture<Outcome<T>> executeAsync(String key, String fingerprint,
+                                                      Supplier<CompletableFuture<T>> action) {
+        Entry<T> entry = new Entry<>(fingerprint, System.currentTimeMillis() + ttlMs);
+        while (true) {
+            Entry<T> existing = entries.putIfAbsent(key, entry);
+            if (existing == null) break;
+            if (existing.isExpired() && existing.result.isDone()) {
+                entries.remove(key, existing);
+                continue;
+            }
+            if (!existing.fingerprint.equals(fingerprint)) {
+                return CompletableFuture.failedFuture(new KeyReusedException());
+            }
+            return awaitExisting(existing);
+        }
+
+        evict();
+        executions.increment();
+        CompletableFuture<T> running;
+        try {
+            running = action.get();
+        } catch (RuntimeException | Error e) {
+            running = CompletableFuture.failedFuture(e);
+        }
+        running.whenComplete((value, error) -> {
+            if (error != null) {
+                entries.remove(key, entry);
+                entry.result.completeExceptionally(unwrap(error));
+            } else {
+                entry.result.complete(value);
+                insertionOrder.add(key);
+            }
+        });
+        return entry.result.thenApply(value -> new Outcome<>(value, false));
+    }
+
+    private CompletableFuture<Outcome<T>> awaitExisting(Entry<T> existing) {
+        if (!existing.result.isDone()) waits.increment();
+        return existing.result
+                .thenApply(value -> {
+                    replays.increment();
+                    return new Outcome<>(value, true);
+                })
+                .orTimeout(waitMs, TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(error -> {
+                    Throwable cause = unwrap(error);
+                    return CompletableFuture.failedFuture(
+                            cause instanceof TimeoutException ? new KeyInFlightException() : cause);
+                });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private void evict() {
+        String head;
+        while ((head = insertionOrder.peek()) != null) {
+            Entry<T> entry = entries.get(head);
+            boolean over = entries.size() > maxEntries;
+            if (entry != null && !entry.isExpired() && !over) return;
+            // A slot left from an earlier entry for a key that is running again only goes from the queue
+            if (insertionOrder.remove(head) && entry != null && entry.result.isDone()
+                    && entries.remove(head, entry)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    public Stats getStats() {
+        Stats stats = new Stats();
+        stats.entries = entries.size();
+        stats.executions = executions.sum();
+        stats.replays = replays.sum();
+        stats.waits = waits.sum();
+        stats.evictions = evictions.sum();
+        return stats;
+    }
+
+
+    public static class Stats {
+        public int entries;
+        public long executions;
+        public long replays;
+        public long waits;
+        public long evictions;
+    }
+
+    public static class Outcome<T> {
+        public final T value;
+        public final boolean replayed;
+
+        public Outcome(T value, boolean replayed) {
+            this.value = value;
+            this.replayed = replayed;
+        }
+    }
+
+    public static class KeyReusedException extends RuntimeException {
+        public KeyReusedException() {
+            super("Idempotency key was already used for a different request");
+        }
+    }
+
+    public static class KeyInFlightException extends RuntimeException {
+        public KeyInFlightException() {
+            super("A request with this idempotency key is still being processed");
+        }
+    }
+
+    private static class Entry<T> {
+        final String fingerprint;
+        final long expiresAt;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Entry(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.fivestarsbakery.cache;
+
+import com.google.gson.Gson;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Holds the serialized form of one versioned value, so unchanged data is never re-serialized.
+ * The source is only called when the version moves on, or when the cached body is older than maxAgeMs
+ * (for data that can also change outside this process).
+ */
+public class JsonCache {
+
+    private static final Gson GSON = new Gson();
+
+    private final long maxAgeMs;
+    private final AtomicReference<CachedJson> current = new AtomicReference<>();
+
+    public JsonCache(long maxAgeMs) {
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    public CachedJson get(long version, Supplier<?> source) {
+        CachedJson cached = current.get();
+        if (cached != null && cached.getVersion() == version
+                && (maxAgeMs <= 0 || System.currentTimeMillis() - cached.getCreatedAt() < maxAgeMs)) {
+            return cached;
+        }
+
+        CachedJson fresh = new CachedJson(version, GSON.toJson(source.get()));
+        current.set(fresh);
+        return fresh;
+    }
+}
@@ -0,0 +1,278 @@
+package com.fivestarsbakery.cache;
+
+import com.fivestarsbakery.model.Product;
+import com.fivestarsbakery.util.AppConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-local cache of the product catalog.
+ * Readers get an immutable Snapshot; ProductDAO writes swap in a new snapshot atomically,
+ * so a reader never sees a half-applied change and never blocks on a writer.
+ *
+ * Snapshots older than CATALOG_CACHE_TTL_MS are reloaded, so edits made by another
+ * instance (or directly in the database) are picked up eventually.
+ *
+ * Stock changes commit in the database first and are patched in afterwards, so writers bracket the commit
+ * with stockChanging() and applyStockDeltas() / stockUnchanged(). A reload only reads while none is in
+ * that window, and is only installed if nothing else changed before it is swapped in; otherwise the
+ * table may or may not hold a delta the snapshot is about to be patched with.
+ */
+public class ProductCatalog {
+
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+    // How long one load attempt waits for in-flight stock changes to settle before reading anyway
+    private static final long SETTLE_WAIT_MS = 50;
+
+    private static final ProductCatalog INSTANCE =
+            new ProductCatalog(AppConfig.getLong("CATALOG_CACHE_TTL_MS", 300_000));
+
+    private final long ttlMs;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final AtomicLong modifications = new AtomicLong();
+    private final AtomicInteger stockChangesInFlight = new AtomicInteger();
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder stockRefreshes = new LongAdder();
+    private final LongAdder discardedLoads = new LongAdder();
+
+    public ProductCatalog(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    public static ProductCatalog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the current snapshot, loading it first if it is missing or expired.
+     * Concurrent misses share a single load; while an expired snapshot exists they are served from it
+     * instead of waiting, since it still carries every change made through this instance.
+     * If no clean read can be had in MAX_LOAD_ATTEMPTS nothing is cached and the next miss tries again.
+     */
+    public Snapshot getOrLoad(Loader loader) throws Exception {
+        Snapshot snapshot = current.get();
+        if (isFresh(snapshot)) {
+            hits.increment();
+            return snapshot;
+        }
+
+        misses.increment();
+        if (snapshot == null) {
+            loadLock.lock();
+        } else if (!loadLock.tryLock()) {
+            return snapshot;
+        }
+        try {
+            snapshot = current.get();
+            if (isFresh(snapshot)) {
+                return snapshot;
+            }
+            // A write that lands while we read the database may or may not be in the result; read again
+            Snapshot loaded = null;
+            for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+                awaitSettledStock();
+                long mark = modifications.get();
+                boolean settled = stockChangesInFlight.get() == 0;
+                loaded = newSnapshot(loader.load());
+                // Every writer bumps modifications before touching current, so the swap fails if one slipped in
+                if (settled && mark == modifications.get() && current.compareAndSet(snapshot, loaded)) {
+                    reloads.increment();
+                    return loaded;
+                }
+                snapshot = current.get();
+            }
+            discardedLoads.increment();
+            return snapshot != null ? snapshot : loaded;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private void awaitSettledStock() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SETTLE_WAIT_MS);
+        while (stockChangesInFlight.get() != 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    private boolean isFresh(Snapshot snapshot) {
+        return snapshot != null && (ttlMs <= 0 || System.currentTimeMillis() - snapshot.loadedAt < ttlMs);
+    }
+
+    /**
+     * Adds or replaces one product. A no-op until the catalog has been loaded.
+     */
+    public void upsert(Product product) {
+        writes.increment();
+        modifications.incrementAndGet();
+        current.updateAndGet(snapshot -> {
+            if (snapshot == null) return null;
+            List<Product> products = new ArrayList<>(snapshot.products);
+            boolean replaced = false;
+            for (int i = 0; i < products.size(); i++) {
+                if (products.get(i).getId() == product.getId()) {
+                    products.set(i, product);
+                    replaced = true;
+                    break;
+                }
+            }
+            if (!replaced) products.add(product);
+            return derive(snapshot, products);
+        });
+    }
+
+    public void remove(int productId) {
+        writes.increment();
+        modifications.incrementAndGet();
+        current.updateAndGet(snapshot -> {
+            if (snapshot == null || !snapshot.byId.containsKey(productId)) return snapshot;
+            List<Product> products = new ArrayList<>(snapshot.products);
+            products.removeIf(p -> p.getId() == productId);
+            return derive(snapshot, products);
+        });
+    }
+
+    /**
+     * Call before committing a stock change, then exactly once applyStockDeltas() or stockUnchanged().
+     */
+    public void stockChanging() {
+        stockChangesInFlight.incrementAndGet();
+        modifications.incrementAndGet();
+    }
+
+    /**
+     * The change announced by stockChanging() did not commit.
+     */
+    public void stockUnchanged() {
+        modifications.incrementAndGet();
+        stockChangesInFlight.decrementAndGet();
+    }
+
+    /**
+     * Applies committed stock changes (productId -> signed delta) without reloading the catalog,
+     * and ends the stockChanging() call that announced them.
+     */
+    public void applyStockDeltas(Map<Integer, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            stockUnchanged();
+            return;
+        }
+        stockRefreshes.increment();
+        modifications.incrementAndGet();
+        try {
+            patchStock(deltas);
+        } finally {
+            stockChangesInFlight.decrementAndGet();
+        }
+    }
+
+    private void patchStock(Map<Integer, Integer> deltas) {
+        current.updateAndGet(snapshot -> {
+            if (snapshot == null) return null;
+            List<Product> products = new ArrayList<>(snapshot.products.size());
+            for (Product p : snapshot.products) {
+                Integer delta = deltas.get(p.getId());
+                products.add(delta == null ? p : new Product(p.getId(), p.getName(), p.getDescription(),
+                        p.getIngredients(), p.getPrice(), p.getStock() + delta, p.getCategory(), p.getImageUrl()));
+            }
+            return derive(snapshot, products);
+        });
+    }
+
+    public void invalidate() {
+        modifications.incrementAndGet();
+        current.set(null);
+    }
+
+    private Snapshot newSnapshot(List<Product> products) {
+        return new Snapshot(versionSequence.incrementAndGet(), System.currentTimeMillis(), products);
+    }
+
+    // Write-through changes keep the load time, so the TTL still bounds staleness from other writers
+    private Snapshot derive(Snapshot base, List<Product> products) {
+        return new Snapshot(versionSequence.incrementAndGet(), base.loadedAt, products);
+    }
+
+    public Stats getStats() {
+        Stats stats = new Stats();
+        Snapshot snapshot = current.get();
+        stats.loaded = snapshot != null;
+        stats.version = snapshot != null ? snapshot.version : 0;
+        stats.products = snapshot != null ? snapshot.products.size() : 0;
+        stats.hits = hits.sum();
+        stats.misses = misses.sum();
+        stats.reloads = reloads.sum();
+        stats.writes = writes.sum();
+        stats.stockRefreshes = stockRefreshes.sum();
+        stats.stockChangesInFlight = stockChangesInFlight.get();
+        stats.discardedLoads = discardedLoads.sum();
+        return stats;
+    }
+
+
+    @FunctionalInterface
+    public interface Loader {
+        List<Product> load() throws Exception;
+    }
+
+    public static final class Snapshot {
+        private final long version;
+        private final long loadedAt;
+        private final List<Product> products;
+        private final Map<Integer, Product> byId;
+
+        Snapshot(long version, long loadedAt, List<Product> products) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.products = Collections.unmodifiableList(new ArrayList<>(products));
+            Map<Integer, Product> index = new HashMap<>();
+            for (Product p : products) {
+                index.put(p.getId(), p);
+            }
+            this.byId = Collections.unmodifiableMap(index);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Product> getProducts() {
+            return products;
+        }
+
+        public Product getById(int id) {
+            return byId.get(id);
+        }
+    }
+
+    public static class Stats {
+        public boolean loaded;
+        public long version;
+        public int products;
+        public long hits;
+        public long misses;
+        public long reloads;
+        public long writes;
+        public long stockRefreshes;
+        public int stockChangesInFlight;
+        // Loads served once but not cached, because stock kept changing around them
+        public long discardedLoads;
+    }
+}
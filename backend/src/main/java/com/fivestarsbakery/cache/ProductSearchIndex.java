@@ -0,0 +1,283 @@
+package com.fivestarsbakery.cache;
+
+import com.fivestarsbakery.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory inverted index over each product's name, description, ingredients and category,
+ * behind GET /api/products/search.
+ * - Terms are lowercased runs of letters and digits. The dictionary is sorted, so the last word of a query
+ *   also matches as a prefix (type-ahead) with a single range lookup
+ * - Every query word has to match; a product scores the weight of the fields the word is found in
+ *   (name 4, category 3, ingredients 2, description 1), doubled for a whole-word match
+ * - The index follows ProductCatalog snapshots: when the version moves, only products whose text changed
+ *   are re-tokenized (stock updates change nothing), and the result is swapped in whole,
+ *   so a search never sees a half-applied change
+ */
+public class ProductSearchIndex {
+
+    private static final int NAME_WEIGHT = 4;
+    private static final int CATEGORY_WEIGHT = 3;
+    private static final int INGREDIENTS_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private static final ProductSearchIndex INSTANCE = new ProductSearchIndex();
+
+    private final AtomicReference<Index> current = new AtomicReference<>(Index.EMPTY);
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder reindexed = new LongAdder();
+
+    private ProductSearchIndex() {
+    }
+
+    public static ProductSearchIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The best `limit` products for the query, highest score first (then by name and id).
+     * A blank query, or one without letters or digits, finds nothing.
+     */
+    public List<Hit> search(String query, ProductCatalog.Snapshot catalog, int limit) {
+        long start = System.nanoTime();
+        Index index = indexFor(catalog);
+        List<String> words = new ArrayList<>(tokenize(query));
+        Map<Integer, Integer> scores = null;
+        for (int i = 0; i < words.size() && (scores == null || !scores.isEmpty()); i++) {
+            Map<Integer, Integer> matches = index.match(words.get(i), i == words.size() - 1);
+            if (scores == null) {
+                scores = matches;
+            } else {
+                Map<Integer, Integer> both = new HashMap<>();
+                for (Map.Entry<Integer, Integer> entry : scores.entrySet()) {
+                    Integer score = matches.get(entry.getKey());
+                    if (score != null) both.put(entry.getKey(), entry.getValue() + score);
+                }
+                scores = both;
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        if (scores != null) {
+            for (Map.Entry<Integer, Integer> entry : scores.entrySet()) {
+                Product product = catalog.getById(entry.getKey());
+                if (product != null) hits.add(new Hit(product, entry.getValue()));
+            }
+            hits.sort(Comparator.comparingInt((Hit hit) -> -hit.score)
+                    .thenComparing(hit -> String.valueOf(hit.name), String.CASE_INSENSITIVE_ORDER)
+                    .thenComparingInt(hit -> hit.id));
+        }
+        searches.increment();
+        searchNanos.add(System.nanoTime() - start);
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    // Brings the index up to the snapshot's version; concurrent searches share one update.
+    // A request still holding an older snapshot uses the newer index, its hits are resolved from its own snapshot
+    private Index indexFor(ProductCatalog.Snapshot catalog) {
+        Index index = current.get();
+        if (index.version >= catalog.getVersion()) return index;
+        updateLock.lock();
+        try {
+            index = current.get();
+            if (index.version < catalog.getVersion()) {
+                index = index.update(catalog, reindexed);
+                current.set(index);
+                updates.increment();
+            }
+            return index;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    // Distinct terms in order of first appearance
+    static Set<String> tokenize(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) return terms;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean inWord = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                terms.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    public Stats getStats() {
+        Index index = current.get();
+        Stats stats = new Stats();
+        stats.version = index.version;
+        stats.products = index.fields.size();
+        stats.terms = index.postings.size();
+        stats.searches = searches.sum();
+        if (stats.searches > 0) {
+            stats.avgSearchMicros = Math.round(searchNanos.sum() / 100.0 / stats.searches) / 10.0;
+        }
+        stats.updates = updates.sum();
+        stats.reindexed = reindexed.sum();
+        return stats;
+    }
+
+    /**
+     * One immutable version of the index. update() copies the term dictionary but only rebuilds the
+     * postings of terms that a changed product gained or lost; everything else is shared with the old version.
+     */
+    private static final class Index {
+        static final Index EMPTY = new Index(0, new TreeMap<>(), new HashMap<>(), new HashMap<>());
+
+        final long version;
+        // term -> productId -> weight
+        final TreeMap<String, Map<Integer, Integer>> postings;
+        // productId -> term -> weight, to take a product's postings out again
+        final Map<Integer, Map<String, Integer>> terms;
+        // productId -> the indexed name, description, ingredients and category, to spot text changes
+        final Map<Integer, String[]> fields;
+
+        Index(long version, TreeMap<String, Map<Integer, Integer>> postings,
+                Map<Integer, Map<String, Integer>> terms, Map<Integer, String[]> fields) {
+            this.version = version;
+            this.postings = postings;
+            this.terms = terms;
+            this.fields = fields;
+        }
+
+        // productId -> best weight for the word; doubled when it is a whole term, prefixes only if asked
+        Map<Integer, Integer> match(String word, boolean prefix) {
+            Map<Integer, Integer> matches = new HashMap<>();
+            Map<String, Map<Integer, Integer>> candidates = prefix
+                    ? postings.subMap(word, true, word + Character.MAX_VALUE, false)
+                    : postings.containsKey(word) ? Collections.singletonMap(word, postings.get(word)) : Collections.emptyMap();
+            for (Map.Entry<String, Map<Integer, Integer>> term : candidates.entrySet()) {
+                int factor = term.getKey().equals(word) ? 2 : 1;
+                term.getValue().forEach((productId, weight) -> matches.merge(productId, weight * factor, Math::max));
+            }
+            return matches;
+        }
+
+        Index update(ProductCatalog.Snapshot catalog, LongAdder reindexed) {
+            Map<Integer, String[]> changed = new HashMap<>();
+            Set<Integer> removed = new HashSet<>(fields.keySet());
+            for (Product product : catalog.getProducts()) {
+                removed.remove(product.getId());
+                String[] text = { product.getName(), product.getDescription(), product.getIngredients(), product.getCategory() };
+                String[] indexed = fields.get(product.getId());
+                if (indexed == null || !Arrays.equals(indexed, text)) {
+                    changed.put(product.getId(), text);
+                }
+            }
+            if (changed.isEmpty() && removed.isEmpty()) {
+                return new Index(catalog.getVersion(), postings, terms, fields);
+            }
+
+            TreeMap<String, Map<Integer, Integer>> newPostings = new TreeMap<>(postings);
+            Map<Integer, Map<String, Integer>> newTerms = new HashMap<>(terms);
+            Map<Integer, String[]> newFields = new HashMap<>(fields);
+            // Posting lists already copied for this version may be changed in place
+            Set<String> copied = new HashSet<>();
+
+            Set<Integer> stale = new HashSet<>(removed);
+            stale.addAll(changed.keySet());
+            for (int productId : stale) {
+                Map<String, Integer> old = newTerms.remove(productId);
+                newFields.remove(productId);
+                if (old == null) continue;
+                for (String term : old.keySet()) {
+                    Map<Integer, Integer> list = writable(newPostings, copied, term);
+                    list.remove(productId);
+                    if (list.isEmpty()) newPostings.remove(term);
+                }
+            }
+            for (Map.Entry<Integer, String[]> entry : changed.entrySet()) {
+                Map<String, Integer> weights = weigh(entry.getValue());
+                for (Map.Entry<String, Integer> term : weights.entrySet()) {
+                    writable(newPostings, copied, term.getKey()).put(entry.getKey(), term.getValue());
+                }
+                newTerms.put(entry.getKey(), weights);
+                newFields.put(entry.getKey(), entry.getValue());
+                reindexed.increment();
+            }
+            return new Index(catalog.getVersion(), newPostings, newTerms, newFields);
+        }
+
+        private static Map<Integer, Integer> writable(TreeMap<String, Map<Integer, Integer>> postings,
+                Set<String> copied, String term) {
+            Map<Integer, Integer> list = postings.get(term);
+            // A term emptied earlier in this update is gone from the map and starts over
+            if (copied.add(term) || list == null) {
+                list = list == null ? new HashMap<>() : new HashMap<>(list);
+                postings.put(term, list);
+            }
+            return list;
+        }
+
+        // name, description, ingredients, category -> term -> summed field weight
+        private static Map<String, Integer> weigh(String[] text) {
+            int[] fieldWeights = { NAME_WEIGHT, DESCRIPTION_WEIGHT, INGREDIENTS_WEIGHT, CATEGORY_WEIGHT };
+            Map<String, Integer> weights = new HashMap<>();
+            for (int i = 0; i < text.length; i++) {
+                for (String term : tokenize(text[i])) {
+                    weights.merge(term, fieldWeights[i], Integer::sum);
+                }
+            }
+            return weights;
+        }
+    }
+
+    // What the result list shows; description and ingredients stay on the product page
+    public static class Hit {
+        public int id;
+        public String name;
+        public double price;
+        public int stock;
+        public String category;
+        public String imageUrl;
+        public int score;
+
+        Hit(Product product, int score) {
+            this.id = product.getId();
+            this.name = product.getName();
+            this.price = product.getPrice();
+            this.stock = product.getStock();
+            this.category = product.getCategory();
+            this.imageUrl = product.getImageUrl();
+            this.score = score;
+        }
+    }
+
+    public static class Stats {
+        public long version;
+        public int products;
+        public int terms;
+        public long searches;
+        public double avgSearchMicros;
+        // Index versions built, one per catalog version searched
+        public long updates;
+        // Products re-tokenized across all updates
+        public long reindexed;
+    }
+}
@@ -0,0 +1,120 @@
+package com.fivestarsbakery.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-local copy of the product_ratings table: rating sum, count and per-star histogram per product.
+ * - Loaded once, at startup (or on first use if startup could not reach the database)
+ * - FeedbackDAO hands over each product's row as it stands right after a review's transaction;
+ *   counts only grow, so whichever copy has the higher count is the newer one and updates may land in any order
+ * - Readers never lock: every Aggregate is immutable and swapped in with a compare-and-set
+ */
+public class RatingAggregates {
+
+    private static final RatingAggregates INSTANCE = new RatingAggregates();
+
+    private final ConcurrentHashMap<Integer, Aggregate> byProduct = new ConcurrentHashMap<>();
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile boolean loaded;
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    private RatingAggregates() {
+    }
+
+    public static RatingAggregates getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Loads the aggregates unless that has already happened. Later calls are free.
+     */
+    public void ensureLoaded(Loader loader) throws Exception {
+        if (loaded) return;
+        loadLock.lock();
+        try {
+            if (loaded) return;
+            loader.load().forEach(this::update);
+            loaded = true;
+            loads.increment();
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Takes a product's committed row; ignored if an equal or newer one is already held.
+     */
+    public void update(int productId, Aggregate aggregate) {
+        updates.increment();
+        while (true) {
+            Aggregate current = byProduct.get(productId);
+            if (current == null) {
+                if (byProduct.putIfAbsent(productId, aggregate) == null) return;
+            } else if (current.count >= aggregate.count || byProduct.replace(productId, current, aggregate)) {
+                return;
+            }
+        }
+    }
+
+    public Aggregate get(int productId) {
+        reads.increment();
+        return byProduct.get(productId);
+    }
+
+    // A point-in-time copy per product; products without reviews are absent
+    public Map<Integer, Aggregate> getAll() {
+        reads.increment();
+        return new HashMap<>(byProduct);
+    }
+
+    public Stats getStats() {
+        Stats stats = new Stats();
+        stats.loaded = loaded;
+        stats.products = byProduct.size();
+        stats.loads = loads.sum();
+        stats.reads = reads.sum();
+        stats.updates = updates.sum();
+        return stats;
+    }
+
+    public static final class Aggregate {
+        public final long sum;
+        public final int count;
+        // stars[i] is the number of (i + 1)-star reviews
+        private final int[] stars;
+
+        public Aggregate(long sum, int count, int[] stars) {
+            this.sum = sum;
+            this.count = count;
+            this.stars = stars.clone();
+        }
+
+        public double getAverage() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        public int[] getStars() {
+            return stars.clone();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        Map<Integer, Aggregate> load() throws Exception;
+    }
+
+    public static class Stats {
+        public boolean loaded;
+        public int products;
+        public long loads;
+        public long reads;
+        public long updates;
+    }
+}
@@ -0,0 +1,56 @@
+package com.fivestarsbakery.controller;
+
+import com.fivestarsbakery.cache.CachedJson;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Writes pre-serialized JSON with a strong ETag and answers matching If-None-Match with 304.
+ * Clients that accept gzip get the cached compressed bytes, under the gzip tag, so CompressionFilter has nothing left to do.
+ */
+final class CachedJsonResponses {
+
+    private CachedJsonResponses() {
+    }
+
+    static void write(HttpServletRequest req, HttpServletResponse resp, CachedJson json) throws IOException {
+        byte[] body = json.getBytes();
+        boolean gzip = CompressionFilter.ENABLED && body.length >= CompressionFilter.MIN_SIZE_BYTES
+                && CompressionFilter.acceptsGzip(req);
+        resp.setHeader("ETag", gzip ? json.getGzipEtag() : json.getEtag());
+        // Browsers may keep the body but must revalidate, which costs a 304 when nothing changed
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setHeader("Vary", "Accept-Encoding");
+
+        // Either tag means the client holds this version, whichever encoding it was sent in
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (matches(ifNoneMatch, json.getEtag()) || matches(ifNoneMatch, json.getGzipEtag())) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        if (gzip) {
+            byte[] original = body;
+            body = json.getGzipBytes();
+            resp.setHeader("Content-Encoding", "gzip");
+            CompressionFilter.recordPrecompressed(original.length, body.length);
+        }
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    // If-None-Match uses weak comparison, so a W/ prefix from an intermediary still matches
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) return true;
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals(etag)) return true;
+        }
+        return false;
+    }
+}
@@ -1,8 +1,11 @@
 package com.fivestarsbakery.controller;
 
+import com.fivestarsbakery.cache.JsonCache;
 import com.fivestarsbakery.dao.CategoryDAO;
 import com.fivestarsbakery.dao.ProductDAO;
 import com.fivestarsbakery.model.Category;
+import com.fivestarsbakery.util.AppConfig;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
 import com.google.gson.Gson;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.MultipartConfig;
@@ -14,7 +17,6 @@ import jakarta.servlet.http.Part;
 import java.io.File;
 import java.io.IOException;
 import java.text.Normalizer;
-import java.util.List;
 
 @WebServlet("/api/categories/*")
 @MultipartConfig(fileSizeThreshold = 1024 * 1024, 
@@ -26,6 +28,7 @@ public class CategoryServlet extends HttpServlet {
     private CategoryDAO categoryDAO = new CategoryDAO();
     private ProductDAO productDAO = new ProductDAO();
     private Gson gson = new Gson();
+    private JsonCache categoryListJson = new JsonCache(AppConfig.getLong("CATALOG_CACHE_TTL_MS", 300_000));
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
@@ -33,9 +36,8 @@ public class CategoryServlet extends HttpServlet {
         resp.setCharacterEncoding("UTF-8");
         setAccessControlHeaders(resp);
 
-        List<Category> categories = categoryDAO.getAllCategories();
-        String json = gson.toJson(categories);
-        resp.getWriter().write(json);
+        CachedJsonResponses.write(req, resp,
+                categoryListJson.get(categoryDAO.getVersion(), categoryDAO::getAllCategories));
     }
 
     @Override
@@ -100,6 +102,8 @@ public class CategoryServlet extends HttpServlet {
 
         } catch (NumberFormatException e) {
              resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
              e.printStackTrace();
              resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -139,6 +143,8 @@ public class CategoryServlet extends HttpServlet {
                 response.getWriter().write("{\"success\": false, \"message\": \"Database error\"}");
             }
 
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
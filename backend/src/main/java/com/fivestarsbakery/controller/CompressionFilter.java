@@ -0,0 +1,314 @@
+package com.fivestarsbakery.controller;
+
+import com.fivestarsbakery.util.AppConfig;
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip-compresses API responses for clients that accept it.
+ * - Bodies are buffered until COMPRESSION_MIN_SIZE_BYTES; smaller ones are sent as-is
+ * - Larger bodies are streamed through gzip, so big payloads are never held in memory twice
+ * - Responses that already carry Content-Encoding (pre-compressed cached JSON) pass through untouched
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class CompressionFilter implements Filter {
+
+    static final boolean ENABLED = AppConfig.getBoolean("COMPRESSION_ENABLED", true);
+    static final int MIN_SIZE_BYTES = AppConfig.getInt("COMPRESSION_MIN_SIZE_BYTES", 1024);
+
+    private static final LongAdder compressedResponses = new LongAdder();
+    private static final LongAdder uncompressedResponses = new LongAdder();
+    private static final LongAdder precompressedResponses = new LongAdder();
+    private static final LongAdder bytesIn = new LongAdder();
+    private static final LongAdder bytesOut = new LongAdder();
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+
+        if (!ENABLED || !acceptsGzip(request) || "HEAD".equalsIgnoreCase(request.getMethod())) {
+            chain.doFilter(req, res);
+            return;
+        }
+
+        response.addHeader("Vary", "Accept-Encoding");
+        GzipResponseWrapper wrapper = new GzipResponseWrapper(response);
+        boolean completed = false;
+        try {
+            chain.doFilter(req, wrapper);
+            completed = true;
+        } finally {
+            wrapper.finish(completed);
+        }
+    }
+
+    /**
+     * True if Accept-Encoding lists gzip (or *) without q=0.
+     */
+    static boolean acceptsGzip(HttpServletRequest request) {
+        String header = request.getHeader("Accept-Encoding");
+        if (header == null) return false;
+        for (String part : header.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim();
+            if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) continue;
+            double q = 1.0;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (q > 0) return true;
+        }
+        return false;
+    }
+
+    static void recordPrecompressed(int originalBytes, int wireBytes) {
+        precompressedResponses.increment();
+        bytesIn.add(originalBytes);
+        bytesOut.add(wireBytes);
+    }
+
+    private static boolean isCompressible(String contentType) {
+        if (contentType == null) return false;
+        String type = contentType.toLowerCase();
+        return type.startsWith("application/json") || type.startsWith("text/")
+                || type.contains("javascript") || type.contains("xml");
+    }
+
+    public static Stats getStats() {
+        Stats stats = new Stats();
+        stats.compressedResponses = compressedResponses.sum();
+        stats.uncompressedResponses = uncompressedResponses.sum();
+        stats.precompressedResponses = precompressedResponses.sum();
+        stats.bytesBeforeCompression = bytesIn.sum();
+        stats.bytesOnWire = bytesOut.sum();
+        return stats;
+    }
+
+
+    public static class Stats {
+        public long compressedResponses;
+        public long uncompressedResponses;
+        public long precompressedResponses;
+        public long bytesBeforeCompression;
+        public long bytesOnWire;
+    }
+
+    private static class GzipResponseWrapper extends HttpServletResponseWrapper {
+        private final HttpServletResponse response;
+        private CompressingOutputStream stream;
+        private PrintWriter writer;
+        private boolean outputStreamUsed;
+
+        GzipResponseWrapper(HttpServletResponse response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) throw new IllegalStateException("getWriter() has already been called");
+            outputStreamUsed = true;
+            return stream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (outputStreamUsed) throw new IllegalStateException("getOutputStream() has already been called");
+                writer = new PrintWriter(new OutputStreamWriter(stream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        private CompressingOutputStream stream() {
+            if (stream == null) stream = new CompressingOutputStream(response);
+            return stream;
+        }
+
+        // The final length is only known once we decide whether to compress
+        @Override
+        public void setContentLength(int len) {
+            stream().declaredLength = len;
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            stream().declaredLength = len;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                stream().declaredLength = Long.parseLong(value.trim());
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                setHeader(name, value);
+            } else {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) writer.flush();
+            if (stream != null) stream.flush();
+        }
+
+        // The writer's encoder holds chars of its own; push them into our buffer so they are discarded too
+        @Override
+        public void resetBuffer() {
+            if (writer != null) writer.flush();
+            if (stream != null) stream.resetBuffer();
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            if (writer != null) writer.flush();
+            if (stream != null) stream.resetBuffer();
+            super.reset();
+        }
+
+        void finish(boolean completed) throws IOException {
+            if (writer != null) writer.flush();
+            if (stream != null) stream.finish(completed);
+        }
+    }
+
+    private static class CompressingOutputStream extends ServletOutputStream {
+        private final HttpServletResponse response;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(MIN_SIZE_BYTES);
+        private ServletOutputStream raw;
+        private GZIPOutputStream gzip;
+        private CountingStream counter;
+        private long uncompressedBytes;
+        private boolean passThrough;
+        long declaredLength = -1;
+
+        CompressingOutputStream(HttpServletResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (gzip != null) {
+                gzip.write(b, off, len);
+                uncompressedBytes += len;
+            } else if (passThrough) {
+                raw.write(b, off, len);
+            } else {
+                buffer.write(b, off, len);
+                if (buffer.size() >= MIN_SIZE_BYTES) {
+                    startBody();
+                }
+            }
+        }
+
+        private void startBody() throws IOException {
+            raw = response.getOutputStream();
+            byte[] pending = buffer.toByteArray();
+            buffer = null;
+
+            if (response.containsHeader("Content-Encoding") || !isCompressible(response.getContentType())) {
+                passThrough = true;
+                if (declaredLength >= 0) response.setContentLengthLong(declaredLength);
+                raw.write(pending);
+                return;
+            }
+
+            response.setHeader("Content-Encoding", "gzip");
+            counter = new CountingStream(raw);
+            // syncFlush lets streaming writers push completed chunks to the client
+            gzip = new GZIPOutputStream(counter, 8192, true);
+            gzip.write(pending);
+            uncompressedBytes = pending.length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // Below the threshold a flush is only a hint; keep buffering until the size is known
+            if (gzip != null) gzip.flush();
+            else if (passThrough) raw.flush();
+        }
+
+        void resetBuffer() {
+            if (buffer != null) buffer.reset();
+        }
+
+        void finish(boolean completed) throws IOException {
+            if (gzip != null) {
+                gzip.finish();
+                compressedResponses.increment();
+                bytesIn.add(uncompressedBytes);
+                bytesOut.add(counter.count);
+            } else if (buffer != null && completed && buffer.size() > 0) {
+                if (!response.containsHeader("Content-Encoding")) uncompressedResponses.increment();
+                response.setContentLength(buffer.size());
+                response.getOutputStream().write(buffer.toByteArray());
+                buffer = null;
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return raw == null || raw.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                response.getOutputStream().setWriteListener(writeListener);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static class CountingStream extends java.io.FilterOutputStream {
+        long count;
+
+        CountingStream(java.io.OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
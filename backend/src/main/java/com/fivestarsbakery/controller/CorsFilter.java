@@ -6,7 +6,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
 
-@WebFilter("/*")
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
 public class CorsFilter implements Filter {
 
     @Override
@@ -36,7 +36,10 @@ public class CorsFilter implements Filter {
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
 
         
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, Idempotency-Key");
+
+        // Lets the admin UI read the pagination cursor
+        response.setHeader("Access-Control-Expose-Headers", "X-Next-Cursor, Idempotent-Replayed");
 
         
         response.setHeader("Access-Control-Allow-Credentials", "true");
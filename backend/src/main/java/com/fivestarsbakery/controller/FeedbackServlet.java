@@ -1,10 +1,19 @@
 package com.fivestarsbakery.controller;
 
+import com.fivestarsbakery.cache.JsonCache;
 import com.fivestarsbakery.dao.FeedbackDAO;
+import com.fivestarsbakery.dao.FeedbackDAO.NewReview;
 import com.fivestarsbakery.dao.FeedbackDAO.ProductRating;
-import com.fivestarsbakery.dao.FeedbackDAO.Review;
+import com.fivestarsbakery.dao.FeedbackDAO.ProductSummary;
+import com.fivestarsbakery.dao.FeedbackDAO.ReviewPage;
+import com.fivestarsbakery.dao.ReviewIntake;
+import com.fivestarsbakery.util.AppConfig;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -13,59 +22,104 @@ import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-@WebServlet("/api/feedback/*")
+/**
+ * Reviews and ratings.
+ * - GET /api/feedback/ratings: average and count for every reviewed product (cached JSON)
+ * - GET /api/feedback/ratings/{productId}: average and count for one product
+ * - GET /api/feedback/summary/{productId}: average, count, per-star counts and the newest
+ *     REVIEWS_PAGE_SIZE reviews (nextCursor if there are older ones), for the product page in one request
+ * - GET /api/feedback/reviews/{productId}: one page of reviews, newest first
+ *     optional: limit (default REVIEWS_PAGE_SIZE, at most 100), rating (1..5),
+ *     cursor (from X-Next-Cursor or the summary's nextCursor)
+ * - POST /api/feedback: store a review
+ *     with REVIEW_ASYNC_ENABLED, reviews are buffered and batch-inserted (see ReviewIntake);
+ *     a review already stored for the same order and product gets a 409
+ */
+@WebServlet(urlPatterns = "/api/feedback/*", asyncSupported = true)
 public class FeedbackServlet extends HttpServlet {
 
+    private static final int REVIEWS_PAGE_SIZE = AppConfig.getInt("REVIEWS_PAGE_SIZE", 10);
+    private static final int MAX_REVIEWS_PAGE_SIZE = 100;
+    private static final long ASYNC_TIMEOUT_MS = AppConfig.getLong("REVIEW_ASYNC_TIMEOUT_MS", 30_000);
+
     private FeedbackDAO feedbackDAO = new FeedbackDAO();
     private Gson gson = new Gson();
+    private JsonCache ratingsJson = new JsonCache(AppConfig.getLong("CATALOG_CACHE_TTL_MS", 300_000));
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
-        PrintWriter out = resp.getWriter();
 
         String pathInfo = req.getPathInfo();
 
+        if (pathInfo == null || pathInfo.equals("/") || pathInfo.equals("/ratings")) {
+            // Written as cached bytes, so this must happen before getWriter()
+            CachedJsonResponses.write(req, resp, ratingsJson.get(feedbackDAO.getRatingsVersion(),
+                    () -> buildRatingsJson(feedbackDAO.getAllProductRatings())));
+            return;
+        }
+
+        PrintWriter out = resp.getWriter();
+
         try {
             
-            if (pathInfo == null || pathInfo.equals("/") || pathInfo.equals("/ratings")) {
-                Map<Integer, ProductRating> allRatings = feedbackDAO.getAllProductRatings();
-                
-                
-                JsonObject result = new JsonObject();
-                for (Map.Entry<Integer, ProductRating> entry : allRatings.entrySet()) {
-                    JsonObject ratingObj = new JsonObject();
-                    ratingObj.addProperty("avgRating", Math.round(entry.getValue().avgRating * 10.0) / 10.0);
-                    ratingObj.addProperty("count", entry.getValue().count);
-                    result.add(String.valueOf(entry.getKey()), ratingObj);
-                }
-                out.print(gson.toJson(result));
-            }
-            
-            else if (pathInfo.startsWith("/ratings/")) {
+            if (pathInfo.startsWith("/ratings/")) {
                 String productIdStr = pathInfo.substring("/ratings/".length());
                 int productId = Integer.parseInt(productIdStr);
                 
-                double avgRating = feedbackDAO.getAverageRating(productId);
-                int count = feedbackDAO.getReviewCount(productId);
+                ProductRating rating = feedbackDAO.getProductRating(productId);
                 
                 JsonObject result = new JsonObject();
                 result.addProperty("productId", productId);
-                result.addProperty("avgRating", Math.round(avgRating * 10.0) / 10.0);
-                result.addProperty("count", count);
+                result.addProperty("avgRating", Math.round(rating.avgRating * 10.0) / 10.0);
+                result.addProperty("count", rating.count);
                 out.print(gson.toJson(result));
             }
+
+            else if (pathInfo.startsWith("/summary/")) {
+                int productId = Integer.parseInt(pathInfo.substring("/summary/".length()));
+
+                ProductSummary summary = feedbackDAO.getProductSummary(productId, REVIEWS_PAGE_SIZE);
+                summary.avgRating = Math.round(summary.avgRating * 10.0) / 10.0;
+                out.print(gson.toJson(summary));
+            }
             
             else if (pathInfo.startsWith("/reviews/")) {
                 String productIdStr = pathInfo.substring("/reviews/".length());
                 int productId = Integer.parseInt(productIdStr);
                 
-                List<Review> reviews = feedbackDAO.getProductReviews(productId);
-                out.print(gson.toJson(reviews));
+                int rating = parseInt(req.getParameter("rating"), 0);
+                if (rating < 0 || rating > 5) {
+                    resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.print("{\"error\": \"Rating must be between 1 and 5\"}");
+                    return;
+                }
+                int limit = parseInt(req.getParameter("limit"), REVIEWS_PAGE_SIZE);
+                if (limit < 1) {
+                    resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.print("{\"error\": \"Invalid limit\"}");
+                    return;
+                }
+                String cursor = req.getParameter("cursor");
+
+                ReviewPage page;
+                try {
+                    page = feedbackDAO.getProductReviewsPage(productId, rating,
+                            cursor == null || cursor.isEmpty() ? null : cursor, Math.min(limit, MAX_REVIEWS_PAGE_SIZE));
+                } catch (IllegalArgumentException e) {
+                    resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    out.print("{\"error\": \"" + e.getMessage() + "\"}");
+                    return;
+                }
+                if (page.nextCursor != null) {
+                    resp.setHeader("X-Next-Cursor", page.nextCursor);
+                }
+                out.print(gson.toJson(page.reviews));
             }
             else {
                 resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
@@ -74,6 +128,8 @@ public class FeedbackServlet extends HttpServlet {
         } catch (NumberFormatException e) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             out.print("{\"error\": \"Invalid product ID\"}");
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -81,6 +137,22 @@ public class FeedbackServlet extends HttpServlet {
         }
     }
 
+    // Query parameters only; a bad value is reported like a bad product id
+    private static int parseInt(String value, int defaultValue) {
+        return value == null || value.isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    static JsonObject buildRatingsJson(Map<Integer, ProductRating> allRatings) {
+        JsonObject result = new JsonObject();
+        for (Map.Entry<Integer, ProductRating> entry : allRatings.entrySet()) {
+            JsonObject ratingObj = new JsonObject();
+            ratingObj.addProperty("avgRating", Math.round(entry.getValue().avgRating * 10.0) / 10.0);
+            ratingObj.addProperty("count", entry.getValue().count);
+            result.add(String.valueOf(entry.getKey()), ratingObj);
+        }
+        return result;
+    }
+
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         resp.setContentType("application/json");
@@ -88,20 +160,25 @@ public class FeedbackServlet extends HttpServlet {
         PrintWriter out = resp.getWriter();
 
         try {
-            
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = req.getReader().readLine()) != null) {
-                sb.append(line);
-            }
-            
-            JsonObject json = gson.fromJson(sb.toString(), JsonObject.class);
+            // Parsed straight from the reader; the body is never copied into a String
+            JsonObject json = gson.fromJson(req.getReader(), JsonObject.class);
             
             int userId = json.get("userId").getAsInt();
             int productId = json.get("productId").getAsInt();
             int orderId = json.has("orderId") ? json.get("orderId").getAsInt() : 0;
             int rating = json.get("rating").getAsInt();
             String comment = json.has("comment") ? json.get("comment").getAsString() : "";
+            if (rating < 1 || rating > 5) {
+                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print("{\"error\": \"Rating must be between 1 and 5\"}");
+                return;
+            }
+
+            ReviewIntake intake = ReviewIntake.getInstance();
+            if (intake != null) {
+                addFeedbackAsync(req, intake, new NewReview(userId, productId, orderId, rating, comment));
+                return;
+            }
 
             boolean success = feedbackDAO.addFeedback(userId, productId, orderId, rating, comment);
 
@@ -116,10 +193,88 @@ public class FeedbackServlet extends HttpServlet {
             }
             out.print(gson.toJson(result));
 
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             out.print("{\"error\": \"Invalid request data\"}");
         }
     }
+
+    /**
+     * Buffered review: the request thread is released while the review waits in ReviewIntake,
+     * and the response is written once its batch has committed.
+     */
+    private void addFeedbackAsync(HttpServletRequest req, ReviewIntake intake, NewReview review) {
+        AsyncContext async = req.startAsync();
+        async.setTimeout(ASYNC_TIMEOUT_MS);
+        AtomicBoolean answered = new AtomicBoolean();
+
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (!answered.compareAndSet(false, true)) return;
+                // The review may still be stored; sending it again is answered with a 409 if it was
+                HttpServletResponse resp = (HttpServletResponse) event.getAsyncContext().getResponse();
+                resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                resp.setHeader("Retry-After", "1");
+                resp.getWriter().write("{\"success\": false, \"error\": \"Review is still being saved, please try again\"}");
+                event.getAsyncContext().complete();
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        // Completion happens on the review writer thread; write the response on a container thread instead
+        intake.submit(review).whenComplete((ignored, error) -> {
+            if (answered.compareAndSet(false, true)) {
+                async.start(() -> respond(async, error));
+            }
+        });
+    }
+
+    private void respond(AsyncContext async, Throwable error) {
+        HttpServletResponse resp = (HttpServletResponse) async.getResponse();
+        try {
+            JsonObject result = new JsonObject();
+            result.addProperty("success", error == null);
+            if (error == null) {
+                result.addProperty("message", "Review saved successfully");
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof ReviewIntake.DuplicateReviewException) {
+                    resp.setStatus(HttpServletResponse.SC_CONFLICT);
+                    result.addProperty("error", cause.getMessage());
+                } else if (cause instanceof IllegalArgumentException) {
+                    resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    result.addProperty("error", cause.getMessage());
+                } else if (cause instanceof ReviewIntake.IntakeFullException || cause instanceof DatabaseUnavailableException) {
+                    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    resp.setHeader("Retry-After", cause instanceof DatabaseUnavailableException
+                            ? String.valueOf(((DatabaseUnavailableException) cause).getRetryAfterSeconds()) : "1");
+                    result.addProperty("error", cause instanceof DatabaseUnavailableException
+                            ? "Service temporarily unavailable, please try again shortly" : cause.getMessage());
+                } else {
+                    resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    result.addProperty("error", "Failed to save review");
+                }
+            }
+            resp.getWriter().write(gson.toJson(result));
+        } catch (IOException e) {
+            System.err.println("Could not write review response: " + e.getMessage());
+        } finally {
+            async.complete();
+        }
+    }
 }
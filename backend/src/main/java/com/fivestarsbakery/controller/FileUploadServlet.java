@@ -2,6 +2,7 @@ package com.fivestarsbakery.controller;
 
 import com.fivestarsbakery.dao.ProductDAO;
 import com.fivestarsbakery.model.Product;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.MultipartConfig;
 import jakarta.servlet.annotation.WebServlet;
@@ -53,6 +54,8 @@ public class FileUploadServlet extends HttpServlet {
 
             response.getWriter().write("{\"success\": " + success + ", \"imageUrl\": \"" + finalImageUrl + "\"}");
 
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             response.setStatus(500);
             response.getWriter().write("{\"error\": \"" + e.getMessage() + "\"}");
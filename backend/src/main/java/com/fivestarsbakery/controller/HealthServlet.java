@@ -0,0 +1,46 @@
+package com.fivestarsbakery.controller;
+
+import com.fivestarsbakery.util.DBConnection;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.Connection;
+
+/**
+ * Health check for load balancers and uptime monitors.
+ * - GET /api/health (200 when a pooled connection validates, 503 otherwise)
+ */
+@WebServlet("/api/health")
+public class HealthServlet extends HttpServlet {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+
+        boolean databaseUp = false;
+        try (Connection conn = DBConnection.getConnection()) {
+            databaseUp = conn != null && conn.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (Exception e) {
+            System.out.println("⚠️ Health check failed: " + e.getMessage());
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("status", databaseUp ? "UP" : "DOWN");
+        result.addProperty("database", databaseUp ? "UP" : "DOWN");
+        result.add("pool", gson.toJsonTree(DBConnection.getPool().getStats()));
+
+        if (!databaseUp) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+        resp.getWriter().write(gson.toJson(result));
+    }
+}
@@ -0,0 +1,74 @@
+package com.fivestarsbakery.controller;
+
+import com.fivestarsbakery.dao.KitchenPlan;
+import com.fivestarsbakery.dao.ProductDAO;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
+import com.fivestarsbakery.util.PickupTimes;
+import com.google.gson.Gson;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Kitchen endpoints for the admin side.
+ * - GET /api/kitchen/plan?from=yyyy-MM-dd&to=yyyy-MM-dd (pickup dates, inclusive;
+ *     from defaults to tomorrow and to defaults to from)
+ *     quantity of each product per pickup bucket and in total, cancelled orders left out (see KitchenPlan)
+ */
+@WebServlet("/api/kitchen/*")
+public class KitchenServlet extends HttpServlet {
+
+    private static final int MAX_DAYS = 31;
+
+    private ProductDAO productDAO = new ProductDAO();
+    private Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+
+        if (!"/plan".equals(req.getPathInfo())) {
+            resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            resp.getWriter().write("{\"message\": \"Not found\"}");
+            return;
+        }
+
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = parseDate(req.getParameter("from"), PickupTimes.now().toLocalDate().plusDays(1));
+            to = parseDate(req.getParameter("to"), from);
+        } catch (DateTimeParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"message\": \"from and to must be yyyy-MM-dd\"}");
+            return;
+        }
+        if (to.isBefore(from) || ChronoUnit.DAYS.between(from, to) >= MAX_DAYS) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"message\": \"from must not be after to, and at most " + MAX_DAYS + " days are allowed\"}");
+            return;
+        }
+
+        try {
+            KitchenPlan.Plan plan = KitchenPlan.getInstance().getPlan(from, to, productDAO.getCatalogSnapshot());
+            resp.getWriter().write(gson.toJson(plan));
+        } catch (DatabaseUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"message\": \"Failed to load kitchen plan\"}");
+        }
+    }
+
+    private static LocalDate parseDate(String value, LocalDate defaultValue) {
+        if (value == null || value.isEmpty()) return defaultValue;
+        return LocalDate.parse(value.trim(), PickupTimes.DATE);
+    }
+}
@@ -2,6 +2,7 @@ package com.fivestarsbakery.controller;
 
 import com.fivestarsbakery.dao.UserDAO;
 import com.fivestarsbakery.model.User;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
 import com.google.gson.Gson;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -44,6 +45,8 @@ public class LoginServlet extends HttpServlet {
                 out.write("{\"message\": \"Invalid email/username or password\"}");
             }
 
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
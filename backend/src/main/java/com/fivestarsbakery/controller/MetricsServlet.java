@@ -0,0 +1,48 @@
+package com.fivestarsbakery.controller;
+
+import com.fivestarsbakery.cache.ProductCatalog;
+import com.fivestarsbakery.cache.ProductSearchIndex;
+import com.fivestarsbakery.cache.RatingAggregates;
+import com.fivestarsbakery.dao.KitchenPlan;
+import com.fivestarsbakery.dao.OrderIntake;
+import com.fivestarsbakery.dao.ReviewIntake;
+import com.fivestarsbakery.dao.PickupSlots;
+import com.fivestarsbakery.dao.StockLedger;
+import com.fivestarsbakery.util.DBConnection;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Live runtime gauges for monitoring.
+ * - GET /api/metrics
+ */
+@WebServlet("/api/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    private Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+
+        JsonObject result = new JsonObject();
+        result.add("pool", gson.toJsonTree(DBConnection.getPool().getStats()));
+        result.add("catalog", gson.toJsonTree(ProductCatalog.getInstance().getStats()));
+        result.add("productSearch", gson.toJsonTree(ProductSearchIndex.getInstance().getStats()));
+        result.add("ratings", gson.toJsonTree(RatingAggregates.getInstance().getStats()));
+        result.add("compression", gson.toJsonTree(CompressionFilter.getStats()));
+        result.add("stockLedger", gson.toJsonTree(StockLedger.getStats()));
+        result.add("idempotency", gson.toJsonTree(OrderServlet.getIdempotencyStats()));
+        result.add("orderIntake", gson.toJsonTree(OrderIntake.getStats()));
+        result.add("reviewIntake", gson.toJsonTree(ReviewIntake.getStats()));
+        result.add("pickupSlots", gson.toJsonTree(PickupSlots.getStats()));
+        result.add("kitchenPlan", gson.toJsonTree(KitchenPlan.getStats()));
+        resp.getWriter().write(gson.toJson(result));
+    }
+}
@@ -1,27 +1,70 @@
 package com.fivestarsbakery.controller;
 
+import com.fivestarsbakery.cache.IdempotencyStore;
 import com.fivestarsbakery.dao.OrderDAO;
+import com.fivestarsbakery.dao.OrderIntake;
+import com.fivestarsbakery.dao.ProductDAO;
 import com.fivestarsbakery.model.Order;
+import com.fivestarsbakery.model.OrderStatus;
+import com.fivestarsbakery.model.Product;
+import com.fivestarsbakery.util.AppConfig;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
+import com.fivestarsbakery.util.InsufficientStockException;
+import com.fivestarsbakery.util.PickupTimes;
+import com.fivestarsbakery.util.SlotFullException;
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 /**
  * Handles Order-related API endpoints.
  * Supports:
  * - GET /api/orders?userId=X (Get order history)
- * - GET /api/orders?all=true (Get all orders for admin)
+ * - GET /api/orders?all=true (Get all orders for admin, one page at a time)
+ *     optional: limit, cursor (from X-Next-Cursor), status, from/to (created date),
+ *     pickupFrom/pickupTo (pickup date); dates are yyyy-MM-dd and inclusive
  * - POST /api/orders (Create new order)
- * - PUT /api/orders/:id (Update order status)
+ *     optional Idempotency-Key header: a retry with the same key returns the first response
+ *     (marked Idempotent-Replayed) instead of placing another order
+ *     with ORDER_ASYNC_ENABLED, orders are queued and group-committed (see OrderIntake)
+ *     409 with alternative times if the pickup slot is full (see PickupSlots)
+ * - PUT /api/orders/:id (Update order status; 409 if OrderStatus does not allow the move)
+ * - PUT /api/orders/status (Bulk update: {"orderIds": [...], "status": "..."}, one transaction,
+ *     with a per-order outcome of UPDATED, UNCHANGED, NOT_FOUND or CONFLICT)
  */
-@WebServlet("/api/orders/*")
+@WebServlet(urlPatterns = "/api/orders/*", asyncSupported = true)
 public class OrderServlet extends HttpServlet {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final int MAX_BULK_ORDERS = 200;
+    private static final long ASYNC_TIMEOUT_MS = AppConfig.getLong("ORDER_ASYNC_TIMEOUT_MS", 30_000);
+
+    // Recent checkout results by Idempotency-Key; orders.idempotency_key catches what this has forgotten
+    private static final IdempotencyStore<String> IDEMPOTENCY = new IdempotencyStore<>(
+            AppConfig.getLong("IDEMPOTENCY_TTL_MS", 86_400_000),
+            AppConfig.getInt("IDEMPOTENCY_MAX_KEYS", 10_000),
+            AppConfig.getLong("IDEMPOTENCY_WAIT_MS", 30_000));
+
     private OrderDAO orderDAO = new OrderDAO();
+    private ProductDAO productDAO = new ProductDAO();
     private Gson gson = new Gson();
 
     @Override
@@ -31,13 +74,23 @@ public class OrderServlet extends HttpServlet {
         PrintWriter out = resp.getWriter();
 
         // Check if admin is requesting all orders
-
-        
         String allParam = req.getParameter("all");
         if ("true".equalsIgnoreCase(allParam)) {
-            java.util.List<Order> orders = orderDAO.getAllOrders();
-            String json = gson.toJson(orders);
-            out.write(json);
+            try {
+                OrderDAO.OrderPage page = orderDAO.getOrdersPage(parseFilter(req), emptyToNull(req.getParameter("cursor")),
+                        parseLimit(req.getParameter("limit")));
+                if (page.nextCursor != null) {
+                    resp.setHeader("X-Next-Cursor", page.nextCursor);
+                }
+                out.write(gson.toJson(page.orders));
+            } catch (IllegalArgumentException e) {
+                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.write("{\"message\": \"" + e.getMessage() + "\"}");
+            } catch (SQLException | IOException e) {
+                e.printStackTrace();
+                resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                out.write("{\"message\": \"Server Error\"}");
+            }
             return;
         }
 
@@ -50,14 +103,24 @@ public class OrderServlet extends HttpServlet {
 
         try {
             int userId = Integer.parseInt(userIdParam);
-            java.util.List<Order> orders = orderDAO.getOrdersByUserId(userId);
-            String json = gson.toJson(orders);
-            out.write(json);
+            // Each order is written as soon as it is read, so the full history is never held in memory
+            JsonWriter writer = new JsonWriter(out);
+            writer.beginArray();
+            orderDAO.streamOrdersByUserId(userId, order -> gson.toJson(order, Order.class, writer));
+            writer.endArray();
+            writer.flush();
         } catch (NumberFormatException e) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             out.write("{\"message\": \"Invalid userId parameter\"}");
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
+            if (resp.isCommitted()) {
+                // Part of the array is already on the wire; a truncated body is the only signal left
+                return;
+            }
+            resp.resetBuffer();
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             out.write("{\"message\": \"Server Error\"}");
         }
@@ -76,6 +139,11 @@ public class OrderServlet extends HttpServlet {
             return;
         }
 
+        if (pathInfo.equals("/status")) {
+            updateStatuses(req, resp, out);
+            return;
+        }
+
         try {
             int orderId = Integer.parseInt(pathInfo.substring(1));
             
@@ -85,15 +153,34 @@ public class OrderServlet extends HttpServlet {
                 out.write("{\"message\": \"Missing status in body\"}");
                 return;
             }
+            OrderStatus status = OrderStatus.parse(statusUpdate.getStatus());
+            if (status == null) {
+                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.write("{\"message\": \"Unknown status: " + statusUpdate.getStatus().replace("\"", "") + "\"}");
+                return;
+            }
 
-            boolean success = orderDAO.updateOrderStatus(orderId, statusUpdate.getStatus());
+            OrderDAO.StatusChange change = orderDAO.updateOrderStatus(orderId, status);
 
-            if (success) {
-                out.write("{\"message\": \"Order status updated\"}");
-            } else {
+            if (change == null) {
                 resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
                 out.write("{\"message\": \"Failed to update status\"}");
+            } else if (change.outcome.equals(OrderDAO.StatusChange.NOT_FOUND)) {
+                resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                out.write("{\"message\": \"Order not found\"}");
+            } else if (change.outcome.equals(OrderDAO.StatusChange.CONFLICT)) {
+                // The current status lets the client refresh a stale view
+                resp.setStatus(HttpServletResponse.SC_CONFLICT);
+                JsonObject result = new JsonObject();
+                result.addProperty("message", "Order #" + orderId + " is " + change.previousStatus
+                        + " and cannot be changed to " + status);
+                result.addProperty("status", change.previousStatus);
+                out.write(gson.toJson(result));
+            } else {
+                out.write("{\"message\": \"Order status updated\"}");
             }
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -101,6 +188,43 @@ public class OrderServlet extends HttpServlet {
         }
     }
 
+    private void updateStatuses(HttpServletRequest req, HttpServletResponse resp, PrintWriter out) throws IOException {
+        BulkStatusUpdate update;
+        try {
+            update = gson.fromJson(req.getReader(), BulkStatusUpdate.class);
+        } catch (JsonParseException e) {
+            update = null;
+        }
+        if (update == null || update.orderIds == null || update.orderIds.isEmpty() || update.status == null) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.write("{\"message\": \"orderIds and status are required\"}");
+            return;
+        }
+        if (update.orderIds.size() > MAX_BULK_ORDERS || update.orderIds.contains(null)) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.write("{\"message\": \"Between 1 and " + MAX_BULK_ORDERS + " order ids are allowed\"}");
+            return;
+        }
+        OrderStatus status = OrderStatus.parse(update.status);
+        if (status == null) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.write("{\"message\": \"Unknown status: " + update.status.replace("\"", "") + "\"}");
+            return;
+        }
+
+        List<OrderDAO.StatusChange> results = orderDAO.updateOrderStatuses(update.orderIds, status);
+        if (results == null) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            out.write("{\"message\": \"Failed to update status\"}");
+            return;
+        }
+        JsonObject body = new JsonObject();
+        body.addProperty("status", status.name());
+        body.addProperty("updated", results.stream().filter(r -> r.outcome.equals(OrderDAO.StatusChange.UPDATED)).count());
+        body.add("results", gson.toJsonTree(results));
+        out.write(gson.toJson(body));
+    }
+
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
@@ -109,29 +233,253 @@ public class OrderServlet extends HttpServlet {
 
         try {
             
-            Order newOrder = gson.fromJson(req.getReader(), Order.class);
+            String body = req.getReader().lines().collect(Collectors.joining("\n"));
+            Order newOrder = gson.fromJson(body, Order.class);
 
             
-            if (newOrder.getItems() == null || newOrder.getItems().isEmpty()) {
+            if (newOrder == null || newOrder.getItems() == null || newOrder.getItems().isEmpty()) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 out.write("{\"message\": \"Order items are required\"}");
                 return;
             }
 
-            
-            boolean success = orderDAO.createOrder(newOrder);
+            String key = emptyToNull(req.getHeader("Idempotency-Key"));
+            if (key != null && !isValidKey(key)) {
+                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.write("{\"message\": \"Invalid Idempotency-Key\"}");
+                return;
+            }
 
-            if (success) {
-                out.write("{\"message\": \"Order placed successfully\"}");
-            } else {
-                resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                out.write("{\"message\": \"Failed to save order\"}");
+            OrderIntake intake = OrderIntake.getInstance();
+            if (intake != null) {
+                placeOrderAsync(req, intake, newOrder, key, body);
+                return;
             }
 
+            if (key == null) {
+                out.write(placeOrder(newOrder, null));
+                return;
+            }
+            // Keys are chosen by clients, so they are only unique per user
+            IdempotencyStore.Outcome<String> outcome = IDEMPOTENCY.execute(newOrder.getUserId() + ":" + key, body,
+                    () -> placeOrder(newOrder, key));
+            if (outcome.replayed) {
+                resp.setHeader("Idempotent-Replayed", "true");
+            }
+            out.write(outcome.value);
+
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
+            writeFailure(resp, e);
+        }
+    }
+
+    /**
+     * Async checkout: the request thread is released while the order waits in OrderIntake,
+     * and the response is written once its batch has committed.
+     */
+    private void placeOrderAsync(HttpServletRequest req, OrderIntake intake, Order order, String key, String body) {
+        AsyncContext async = req.startAsync();
+        async.setTimeout(ASYNC_TIMEOUT_MS);
+        AtomicBoolean answered = new AtomicBoolean();
+
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (!answered.compareAndSet(false, true)) return;
+                // The order may still commit; a retry with the same Idempotency-Key will return it
+                HttpServletResponse resp = (HttpServletResponse) event.getAsyncContext().getResponse();
+                resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                resp.setHeader("Retry-After", "1");
+                resp.getWriter().write("{\"message\": \"Order is still being processed, please try again\"}");
+                event.getAsyncContext().complete();
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        CompletableFuture<IdempotencyStore.Outcome<String>> result = key == null
+                ? submit(intake, order, null).thenApply(value -> new IdempotencyStore.Outcome<>(value, false))
+                : IDEMPOTENCY.executeAsync(order.getUserId() + ":" + key, body, () -> submit(intake, order, key));
+
+        // Completion happens on the order writer thread; write the response on a container thread instead
+        result.whenComplete((outcome, error) -> {
+            if (answered.compareAndSet(false, true)) {
+                async.start(() -> respond(async, outcome, error));
+            }
+        });
+    }
+
+    // async.getResponse() is the container's response, not CompressionFilter's wrapper; order replies are small
+    private void respond(AsyncContext async, IdempotencyStore.Outcome<String> outcome, Throwable error) {
+        HttpServletResponse resp = (HttpServletResponse) async.getResponse();
+        try {
+            if (error == null) {
+                if (outcome.replayed) {
+                    resp.setHeader("Idempotent-Replayed", "true");
+                }
+                resp.getWriter().write(outcome.value);
+            } else {
+                writeFailure(resp, error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write order response: " + e.getMessage());
+        } finally {
+            async.complete();
+        }
+    }
+
+    private CompletableFuture<String> submit(OrderIntake intake, Order order, String idempotencyKey) {
+        return intake.submit(order, idempotencyKey).thenApply(this::successBody);
+    }
+
+    private void writeFailure(HttpServletResponse resp, Throwable e) throws IOException {
+        PrintWriter out = resp.getWriter();
+        if (e instanceof IdempotencyStore.KeyReusedException) {
+            resp.setStatus(422);
+            out.write("{\"message\": \"" + e.getMessage() + "\"}");
+        } else if (e instanceof IdempotencyStore.KeyInFlightException) {
+            resp.setStatus(HttpServletResponse.SC_CONFLICT);
+            out.write("{\"message\": \"" + e.getMessage() + "\"}");
+        } else if (e instanceof OrderNotSavedException) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            out.write("{\"message\": \"Failed to save order\"}");
+        } else if (e instanceof InsufficientStockException) {
+            resp.setStatus(HttpServletResponse.SC_CONFLICT);
+            out.write(gson.toJson(stockConflict((InsufficientStockException) e)));
+        } else if (e instanceof SlotFullException) {
+            resp.setStatus(HttpServletResponse.SC_CONFLICT);
+            out.write(gson.toJson(slotConflict((SlotFullException) e)));
+        } else if (e instanceof IllegalArgumentException) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonObject result = new JsonObject();
+            result.addProperty("message", e.getMessage());
+            out.write(gson.toJson(result));
+        } else if (e instanceof OrderIntake.IntakeFullException || e instanceof DatabaseUnavailableException) {
+            // Only reached on the async path; synchronously, ServiceUnavailableFilter handles the database case
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", e instanceof DatabaseUnavailableException
+                    ? String.valueOf(((DatabaseUnavailableException) e).getRetryAfterSeconds()) : "1");
+            out.write("{\"message\": \"" + (e instanceof DatabaseUnavailableException
+                    ? "Service temporarily unavailable, please try again shortly" : e.getMessage()) + "\"}");
+        } else {
             e.printStackTrace();
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             out.write("{\"message\": \"Server Error: " + e.getMessage() + "\"}");
         }
     }
+
+    // Returns the success body; failures throw, so they are never replayed for an idempotency key
+    private String placeOrder(Order order, String idempotencyKey) {
+        if (!orderDAO.createOrder(order, idempotencyKey)) {
+            throw new OrderNotSavedException();
+        }
+        return successBody(order);
+    }
+
+    private String successBody(Order order) {
+        JsonObject result = new JsonObject();
+        result.addProperty("message", "Order placed successfully");
+        result.addProperty("orderId", order.getOrderId());
+        result.addProperty("totalAmount", order.getTotalAmount());
+        return gson.toJson(result);
+    }
+
+    private static boolean isValidKey(String key) {
+        if (key.length() > MAX_KEY_LENGTH) return false;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x21 || c > 0x7e) return false;
+        }
+        return true;
+    }
+
+    public static IdempotencyStore.Stats getIdempotencyStats() {
+        return IDEMPOTENCY.getStats();
+    }
+
+    private static class OrderNotSavedException extends RuntimeException {
+    }
+
+    private JsonObject stockConflict(InsufficientStockException e) {
+        Product product = productDAO.getProductById(e.getProductId());
+        String name = product != null ? product.getName() : "product #" + e.getProductId();
+        JsonObject result = new JsonObject();
+        result.addProperty("message", e.getAvailable() > 0
+                ? "Only " + e.getAvailable() + " " + name + " left in stock"
+                : name + " is out of stock");
+        result.addProperty("productId", e.getProductId());
+        result.addProperty("requested", e.getRequested());
+        result.addProperty("available", e.getAvailable());
+        return result;
+    }
+
+    private JsonObject slotConflict(SlotFullException e) {
+        JsonObject result = new JsonObject();
+        result.addProperty("message", e.getAlternatives().isEmpty()
+                ? e.getMessage() + " and no other slot has room that day"
+                : e.getMessage() + ", try " + String.join(", ", e.getAlternatives()));
+        result.addProperty("pickupDate", e.getPickupDate());
+        result.addProperty("pickupTime", e.getPickupTime());
+        result.add("alternatives", gson.toJsonTree(e.getAlternatives()));
+        return result;
+    }
+
+    private static int parseLimit(String value) {
+        if (value == null || value.isEmpty()) return DEFAULT_PAGE_SIZE;
+        try {
+            int limit = Integer.parseInt(value);
+            if (limit < 1) throw new IllegalArgumentException("Invalid limit");
+            return Math.min(limit, MAX_PAGE_SIZE);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit");
+        }
+    }
+
+    private static OrderDAO.OrderFilter parseFilter(HttpServletRequest req) {
+        OrderDAO.OrderFilter filter = new OrderDAO.OrderFilter();
+        String status = emptyToNull(req.getParameter("status"));
+        filter.status = status != null ? status.toUpperCase() : null;
+        filter.createdFrom = toInstant(startOfDay(req.getParameter("from"), 0));
+        filter.createdTo = toInstant(startOfDay(req.getParameter("to"), 1));
+        filter.pickupFrom = startOfDay(req.getParameter("pickupFrom"), 0);
+        filter.pickupTo = startOfDay(req.getParameter("pickupTo"), 1);
+        return filter;
+    }
+
+    // Dates are the bakery's calendar days; inclusive end dates become an exclusive bound at the next midnight
+    private static java.time.LocalDateTime startOfDay(String date, int plusDays) {
+        if (date == null || date.isEmpty()) return null;
+        try {
+            return java.time.LocalDate.parse(date, PickupTimes.DATE).plusDays(plusDays).atStartOfDay();
+        } catch (java.time.format.DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date");
+        }
+    }
+
+    // created_at is an instant, so the bakery's midnight has to be placed in its zone
+    private static java.sql.Timestamp toInstant(java.time.LocalDateTime localMidnight) {
+        return localMidnight == null ? null : java.sql.Timestamp.from(localMidnight.atZone(PickupTimes.ZONE).toInstant());
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static class BulkStatusUpdate {
+        List<Integer> orderIds;
+        String status;
+    }
 }
@@ -0,0 +1,59 @@
+package com.fivestarsbakery.controller;
+
+import com.fivestarsbakery.dao.PickupSlots;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
+import com.fivestarsbakery.util.PickupTimes;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Pickup slots for Checkout.
+ * - GET /api/pickup-slots?date=yyyy-MM-dd (defaults to today): the slots that have not started yet,
+ *     each with the seats left ("available", 0 when full)
+ */
+@WebServlet("/api/pickup-slots")
+public class PickupSlotServlet extends HttpServlet {
+
+    private Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+
+        String dateParam = req.getParameter("date");
+        try {
+            LocalDate date = dateParam == null || dateParam.isEmpty()
+                    ? PickupTimes.now().toLocalDate()
+                    : LocalDate.parse(dateParam.trim(), PickupTimes.DATE);
+
+            JsonObject result = new JsonObject();
+            result.addProperty("date", PickupTimes.DATE.format(date));
+            result.addProperty("slotMinutes", PickupSlots.getSlotMinutes());
+            result.addProperty("capacity", PickupSlots.getCapacity());
+            result.add("slots", gson.toJsonTree(PickupSlots.getInstance().available(date)));
+            resp.getWriter().write(gson.toJson(result));
+        } catch (DateTimeParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.getWriter().write("{\"message\": \"date must be yyyy-MM-dd\"}");
+        } catch (IllegalArgumentException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonObject result = new JsonObject();
+            result.addProperty("message", e.getMessage());
+            resp.getWriter().write(gson.toJson(result));
+        } catch (DatabaseUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"message\": \"Failed to load pickup slots\"}");
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.fivestarsbakery.controller;
 
+import com.fivestarsbakery.cache.JsonCache;
+import com.fivestarsbakery.cache.ProductCatalog;
+import com.fivestarsbakery.cache.ProductSearchIndex;
 import com.fivestarsbakery.dao.ProductDAO;
 import com.fivestarsbakery.model.Product;
 import com.google.gson.Gson;
@@ -15,6 +18,10 @@ public class ProductServlet extends HttpServlet {
 
     private ProductDAO productDAO = new ProductDAO();
     private Gson gson = new Gson();
+    // Catalog snapshots get a new version on every change, so no age limit is needed here
+    private JsonCache productListJson = new JsonCache(0);
+
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -25,9 +32,15 @@ public class ProductServlet extends HttpServlet {
 
         if (pathInfo == null || pathInfo.equals("/")) {
             
-            List<Product> productList = productDAO.getAllProducts();
-            String jsonString = gson.toJson(productList);
-            response.getWriter().write(jsonString);
+            ProductCatalog.Snapshot snapshot = productDAO.getCatalogSnapshot();
+            if (snapshot == null) {
+                response.getWriter().write("[]");
+                return;
+            }
+            CachedJsonResponses.write(request, response,
+                    productListJson.get(snapshot.getVersion(), snapshot::getProducts));
+        } else if (pathInfo.equals("/search")) {
+            search(request, response);
         } else {
             
             try {
@@ -50,6 +63,35 @@ public class ProductServlet extends HttpServlet {
         }
     }
 
+    /**
+     * GET /api/products/search?q=...&limit=20: ranked matches from ProductSearchIndex,
+     * the last word matching as a prefix. Results leave out description and ingredients.
+     * The catalog bounds the result, so a limit of the menu's size returns every match.
+     */
+    private void search(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        int limit;
+        try {
+            String limitParam = request.getParameter("limit");
+            limit = limitParam == null || limitParam.isEmpty() ? DEFAULT_SEARCH_LIMIT : Integer.parseInt(limitParam);
+        } catch (NumberFormatException e) {
+            limit = 0;
+        }
+        if (limit < 1) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().write("{\"message\": \"Invalid limit\"}");
+            return;
+        }
+
+        ProductCatalog.Snapshot snapshot = productDAO.getCatalogSnapshot();
+        if (snapshot == null) {
+            response.getWriter().write("[]");
+            return;
+        }
+        List<ProductSearchIndex.Hit> hits = ProductSearchIndex.getInstance()
+                .search(request.getParameter("q"), snapshot, limit);
+        response.getWriter().write(gson.toJson(hits));
+    }
+
     
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
@@ -2,6 +2,7 @@ package com.fivestarsbakery.controller;
 
 import com.fivestarsbakery.dao.UserDAO;
 import com.fivestarsbakery.model.User;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
 import com.google.gson.Gson;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -32,6 +33,8 @@ public class RegisterServlet extends HttpServlet {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST); 
                 resp.getWriter().write("{\"message\": \"Registration failed. Username or Email already exists.\"}");
             }
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
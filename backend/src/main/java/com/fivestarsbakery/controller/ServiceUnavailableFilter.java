@@ -0,0 +1,51 @@
+package com.fivestarsbakery.controller;
+
+import com.fivestarsbakery.util.DatabaseUnavailableException;
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Maps DatabaseUnavailableException from any API servlet to a fast 503 with Retry-After,
+ * instead of a 500 or an empty result.
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class ServiceUnavailableFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+        try {
+            chain.doFilter(req, res);
+        } catch (DatabaseUnavailableException e) {
+            sendUnavailable((HttpServletResponse) res, e);
+        } catch (ServletException | RuntimeException e) {
+            DatabaseUnavailableException cause = findCause(e);
+            if (cause == null) throw e;
+            sendUnavailable((HttpServletResponse) res, cause);
+        }
+    }
+
+    private DatabaseUnavailableException findCause(Throwable t) {
+        while (t != null) {
+            if (t instanceof DatabaseUnavailableException) return (DatabaseUnavailableException) t;
+            t = t.getCause();
+        }
+        return null;
+    }
+
+    private void sendUnavailable(HttpServletResponse response, DatabaseUnavailableException e) throws IOException {
+        System.out.println("⚠️ " + e.getMessage());
+        if (response.isCommitted()) {
+            return;
+        }
+
+        // resetBuffer keeps headers, so CORS headers already set still reach the browser
+        response.resetBuffer();
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write("{\"message\": \"Service temporarily unavailable, please try again shortly\"}");
+    }
+}
@@ -2,6 +2,7 @@ package com.fivestarsbakery.controller;
 
 import com.fivestarsbakery.dao.UserDAO;
 import com.fivestarsbakery.model.User;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
 import com.google.gson.Gson;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -56,6 +57,8 @@ public class UpdateProfileServlet extends HttpServlet {
                 out.write("{\"message\": \"Failed to update profile\"}");
             }
 
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
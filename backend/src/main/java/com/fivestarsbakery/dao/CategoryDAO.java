@@ -2,13 +2,22 @@ package com.fivestarsbakery.dao;
 
 import com.fivestarsbakery.model.Category;
 import com.fivestarsbakery.util.DBConnection;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CategoryDAO {
 
+    // Bumped on every successful write so cached responses know when to rebuild
+    private static final AtomicLong VERSION = new AtomicLong(1);
+
+    public long getVersion() {
+        return VERSION.get();
+    }
+
     public List<Category> getAllCategories() {
         List<Category> categories = new ArrayList<>();
         String sql = "SELECT * FROM categories";
@@ -24,6 +33,8 @@ public class CategoryDAO {
                         rs.getString("display_name"),
                         rs.getString("icon_url")));
             }
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -41,7 +52,11 @@ public class CategoryDAO {
             stmt.setString(3, category.getIconUrl());
 
             int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            if (rowsAffected == 0) return false;
+            VERSION.incrementAndGet();
+            return true;
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -63,6 +78,8 @@ public class CategoryDAO {
                         rs.getString("icon_url"));
                 }
             }
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) { e.printStackTrace(); }
         return category;
     }
@@ -72,7 +89,11 @@ public class CategoryDAO {
         try (Connection conn = DBConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, id);
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() == 0) return false;
+            VERSION.incrementAndGet();
+            return true;
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -1,71 +1,161 @@
 package com.fivestarsbakery.dao;
 
+import com.fivestarsbakery.cache.RatingAggregates;
 import com.fivestarsbakery.util.DBConnection;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Savepoint;
+import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class FeedbackDAO {
 
-    
-    public double getAverageRating(int productId) {
-        String sql = "SELECT AVG(rating) as avg_rating FROM feedback WHERE product_id = ?";
+    // Bumped on every new review so the cached ratings response knows when to rebuild
+    private static final AtomicLong RATINGS_VERSION = new AtomicLong(1);
+
+    private static final String REVIEW_SELECT = "SELECT f.feedback_id, f.user_id, f.rating, f.comment, f.created_at, u.username "
+            + "FROM feedback f JOIN users u ON f.user_id = u.user_id";
+
+    private static final String AGGREGATE_COLUMNS = "product_id, rating_sum, rating_count, stars_1, stars_2, stars_3, stars_4, stars_5";
+
+    // Adds one product's deltas (sum, count, 1..5-star counts), creating the row for its first review
+    private static final String AGGREGATE_UPSERT = "INSERT INTO product_ratings (" + AGGREGATE_COLUMNS + ") "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE rating_sum = rating_sum + ?, "
+            + "rating_count = rating_count + ?, stars_1 = stars_1 + ?, stars_2 = stars_2 + ?, "
+            + "stars_3 = stars_3 + ?, stars_4 = stars_4 + ?, stars_5 = stars_5 + ?";
+
+    private final RatingAggregates aggregates = RatingAggregates.getInstance();
+
+    // Auto-migrate: per-product rating aggregates, kept up to date by addFeedback and backfilled once from feedback,
+    // and the indexes behind paged reviews
+    static {
         try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, productId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getDouble("avg_rating");
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = conn.getMetaData().getTables(null, null, "product_ratings", null)) {
+                if (!rs.next()) {
+                    stmt.execute("CREATE TABLE product_ratings (product_id INT PRIMARY KEY, "
+                            + "rating_sum BIGINT NOT NULL DEFAULT 0, rating_count INT NOT NULL DEFAULT 0, "
+                            + "stars_1 INT NOT NULL DEFAULT 0, stars_2 INT NOT NULL DEFAULT 0, stars_3 INT NOT NULL DEFAULT 0, "
+                            + "stars_4 INT NOT NULL DEFAULT 0, stars_5 INT NOT NULL DEFAULT 0)");
+                    stmt.execute("INSERT INTO product_ratings (" + AGGREGATE_COLUMNS + ") "
+                            + "SELECT product_id, SUM(rating), COUNT(*), "
+                            + "SUM(CASE WHEN rating = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN rating = 2 THEN 1 ELSE 0 END), "
+                            + "SUM(CASE WHEN rating = 3 THEN 1 ELSE 0 END), SUM(CASE WHEN rating = 4 THEN 1 ELSE 0 END), "
+                            + "SUM(CASE WHEN rating = 5 THEN 1 ELSE 0 END) "
+                            + "FROM feedback WHERE product_id IS NOT NULL GROUP BY product_id");
+                    System.out.println("Database Migrated: Added 'product_ratings' table.");
                 }
             }
+            // Keyset pages of a product's reviews, all of them or one star rating at a time
+            if (!OrderDAO.hasIndex(conn, "feedback", "idx_feedback_product_created")) {
+                stmt.execute("CREATE INDEX idx_feedback_product_created ON feedback (product_id, created_at, feedback_id)");
+                System.out.println("Database Migrated: Added 'idx_feedback_product_created' index to 'feedback' table.");
+            }
+            if (!OrderDAO.hasIndex(conn, "feedback", "idx_feedback_product_rating")) {
+                stmt.execute("CREATE INDEX idx_feedback_product_rating ON feedback (product_id, rating, created_at, feedback_id)");
+                System.out.println("Database Migrated: Added 'idx_feedback_product_rating' index to 'feedback' table.");
+            }
         } catch (Exception e) {
-            e.printStackTrace();
+            System.err.println("Auto-migration failed: " + e.getMessage());
         }
-        return 0.0;
     }
 
-    
-    public int getReviewCount(int productId) {
-        String sql = "SELECT COUNT(*) as review_count FROM feedback WHERE product_id = ?";
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, productId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("review_count");
-                }
+    public long getRatingsVersion() {
+        return RATINGS_VERSION.get();
+    }
+
+    /**
+     * Average and count for one product, from RatingAggregates: no SQL once loaded.
+     */
+    public ProductRating getProductRating(int productId) {
+        try {
+            loadRatingAggregates();
+            RatingAggregates.Aggregate aggregate = aggregates.get(productId);
+            if (aggregate != null) {
+                return new ProductRating(aggregate.getAverage(), aggregate.count);
             }
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
-        return 0;
+        return new ProductRating(0.0, 0);
     }
 
-    
+    /**
+     * Everything the product page shows about reviews, for one round trip:
+     * - average, count and per-star counts from RatingAggregates
+     * - the first page of getProductReviewsPage, a single query (none if there are no reviews)
+     */
+    public ProductSummary getProductSummary(int productId, int pageSize) throws Exception {
+        loadRatingAggregates();
+        RatingAggregates.Aggregate aggregate = aggregates.get(productId);
+        ProductSummary summary = new ProductSummary();
+        summary.productId = productId;
+        if (aggregate == null || aggregate.count == 0) {
+            return summary;
+        }
+        summary.avgRating = aggregate.getAverage();
+        summary.count = aggregate.count;
+        summary.stars = aggregate.getStars();
+        ReviewPage page = getProductReviewsPage(productId, 0, null, pageSize);
+        summary.reviews = page.reviews;
+        summary.nextCursor = page.nextCursor;
+        return summary;
+    }
+
+    /**
+     * Average and count for every reviewed product, from RatingAggregates: no SQL once loaded.
+     */
     public Map<Integer, ProductRating> getAllProductRatings() {
         Map<Integer, ProductRating> ratings = new HashMap<>();
-        String sql = "SELECT product_id, AVG(rating) as avg_rating, COUNT(*) as review_count " +
-                     "FROM feedback GROUP BY product_id";
-        
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-            
-            while (rs.next()) {
-                int productId = rs.getInt("product_id");
-                double avgRating = rs.getDouble("avg_rating");
-                int count = rs.getInt("review_count");
-                ratings.put(productId, new ProductRating(avgRating, count));
-            }
+        try {
+            loadRatingAggregates();
+            aggregates.getAll().forEach((productId, aggregate) ->
+                    ratings.put(productId, new ProductRating(aggregate.getAverage(), aggregate.count)));
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
         return ratings;
     }
 
+    /**
+     * Reads product_ratings into RatingAggregates. Runs at startup; later calls do nothing.
+     */
+    public void loadRatingAggregates() throws Exception {
+        aggregates.ensureLoaded(() -> {
+            Map<Integer, RatingAggregates.Aggregate> loaded = new HashMap<>();
+            try (Connection conn = DBConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement("SELECT " + AGGREGATE_COLUMNS + " FROM product_ratings");
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    loaded.put(rs.getInt("product_id"), readAggregate(rs));
+                }
+            }
+            return loaded;
+        });
+    }
+
+    private static RatingAggregates.Aggregate readAggregate(ResultSet rs) throws SQLException {
+        int[] stars = new int[5];
+        for (int i = 0; i < stars.length; i++) {
+            stars[i] = rs.getInt("stars_" + (i + 1));
+        }
+        return new RatingAggregates.Aggregate(rs.getLong("rating_sum"), rs.getInt("rating_count"), stars);
+    }
+
     
     public static class ProductRating {
         public double avgRating;
@@ -77,51 +167,228 @@ public class FeedbackDAO {
         }
     }
 
-    
+    /**
+     * Stores the review and adds it to the product's row in product_ratings, in one transaction.
+     * Throws IllegalArgumentException for a rating outside 1..5.
+     */
     public boolean addFeedback(int userId, int productId, int orderId, int rating, String comment) {
-        String sql = "INSERT INTO feedback (user_id, product_id, order_id, rating, comment) VALUES (?, ?, ?, ?, ?)";
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setInt(2, productId);
-            stmt.setInt(3, orderId);
-            stmt.setInt(4, rating);
-            stmt.setString(5, comment);
-            return stmt.executeUpdate() > 0;
+        if (rating < 1 || rating > 5) {
+            throw new IllegalArgumentException("Rating must be between 1 and 5");
+        }
+        NewReview review = new NewReview(userId, productId, orderId, rating, comment);
+        try {
+            SQLException error = addFeedbackBatch(java.util.List.of(review))[0];
+            if (error != null) {
+                error.printStackTrace();
+                return false;
+            }
+            return true;
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
     }
 
-    
-    public java.util.List<Review> getProductReviews(int productId) {
-        java.util.List<Review> reviews = new java.util.ArrayList<>();
-        String sql = "SELECT f.feedback_id, f.user_id, f.rating, f.comment, f.created_at, u.username " +
-                     "FROM feedback f " +
-                     "JOIN users u ON f.user_id = u.user_id " +
-                     "WHERE f.product_id = ? " +
-                     "ORDER BY f.created_at DESC";
-        
+    /**
+     * Stores several reviews in one transaction: one JDBC batch of inserts, then one product_ratings upsert
+     * per product. If the batch is refused (a review already stored, an unknown order), the reviews are
+     * inserted one by one behind savepoints, so only the offending ones are left out.
+     * Returns, per review, null if it was stored or the error that kept it out; throws if the transaction failed.
+     * Throws IllegalArgumentException for a rating outside 1..5.
+     */
+    public SQLException[] addFeedbackBatch(java.util.List<NewReview> reviews) throws SQLException {
+        for (NewReview review : reviews) {
+            if (review.rating < 1 || review.rating > 5) {
+                throw new IllegalArgumentException("Rating must be between 1 and 5");
+            }
+        }
+        SQLException[] errors = new SQLException[reviews.size()];
+        // Sorted, so concurrent transactions lock product_ratings rows in the same order
+        Map<Integer, long[]> deltas = new TreeMap<>();
+        Map<Integer, RatingAggregates.Aggregate> rows = new HashMap<>();
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                insertReviews(conn, reviews, errors);
+                for (int i = 0; i < reviews.size(); i++) {
+                    if (errors[i] != null) continue;
+                    NewReview review = reviews.get(i);
+                    // rating sum, count, then 1..5-star counts
+                    long[] delta = deltas.computeIfAbsent(review.productId, k -> new long[7]);
+                    delta[0] += review.rating;
+                    delta[1]++;
+                    delta[1 + review.rating]++;
+                }
+                if (deltas.isEmpty()) {
+                    conn.rollback();
+                    return errors;
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(AGGREGATE_UPSERT)) {
+                    for (Map.Entry<Integer, long[]> entry : deltas.entrySet()) {
+                        long[] delta = entry.getValue();
+                        stmt.setInt(1, entry.getKey());
+                        for (int i = 0; i < delta.length; i++) {
+                            stmt.setLong(2 + i, delta[i]);
+                            stmt.setLong(9 + i, delta[i]);
+                        }
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                // The rows are locked by our updates, so this is exactly the state our commit publishes
+                String placeholders = String.join(",", java.util.Collections.nCopies(deltas.size(), "?"));
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT " + AGGREGATE_COLUMNS + " FROM product_ratings WHERE product_id IN (" + placeholders + ")")) {
+                    int index = 1;
+                    for (int productId : deltas.keySet()) {
+                        stmt.setInt(index++, productId);
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            rows.put(rs.getInt("product_id"), readAggregate(rs));
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        rows.forEach(aggregates::update);
+        RATINGS_VERSION.incrementAndGet();
+        return errors;
+    }
+
+    private static void insertReviews(Connection conn, java.util.List<NewReview> reviews, SQLException[] errors)
+            throws SQLException {
+        String sql = "INSERT INTO feedback (user_id, product_id, order_id, rating, comment) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (reviews.size() == 1) {
+                // Nothing to keep apart; a failed statement leaves the transaction usable
+                try {
+                    bindReview(stmt, reviews.get(0));
+                    stmt.executeUpdate();
+                } catch (SQLIntegrityConstraintViolationException | SQLDataException e) {
+                    errors[0] = e;
+                }
+                return;
+            }
+            Savepoint beforeBatch = conn.setSavepoint();
+            for (NewReview review : reviews) {
+                bindReview(stmt, review);
+                stmt.addBatch();
+            }
+            try {
+                stmt.executeBatch();
+                conn.releaseSavepoint(beforeBatch);
+                return;
+            } catch (BatchUpdateException e) {
+                // Drivers differ on whether the rest of a failed batch ran, so start over row by row
+                stmt.clearBatch();
+                conn.rollback(beforeBatch);
+            }
+            for (int i = 0; i < reviews.size(); i++) {
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    bindReview(stmt, reviews.get(i));
+                    stmt.executeUpdate();
+                    conn.releaseSavepoint(savepoint);
+                } catch (SQLIntegrityConstraintViolationException | SQLDataException e) {
+                    conn.rollback(savepoint);
+                    errors[i] = e;
+                }
+            }
+        }
+    }
+
+    private static void bindReview(PreparedStatement stmt, NewReview review) throws SQLException {
+        stmt.setInt(1, review.userId);
+        stmt.setInt(2, review.productId);
+        stmt.setInt(3, review.orderId);
+        stmt.setInt(4, review.rating);
+        stmt.setString(5, review.comment);
+    }
+
+    /**
+     * One page of a product's reviews, newest first, keyed on (created_at, feedback_id).
+     * - rating 1..5 keeps only reviews with that many stars, 0 keeps all
+     * - Each page is a range read on idx_feedback_product_created (or idx_feedback_product_rating when filtered)
+     *   starting right after the cursor, so deep pages cost the same as the first one
+     * nextCursor is null on the last page. Throws IllegalArgumentException for a bad cursor.
+     */
+    public ReviewPage getProductReviewsPage(int productId, int rating, String cursor, int limit) throws SQLException {
+        StringBuilder sql = new StringBuilder(REVIEW_SELECT).append(" WHERE f.product_id = ?");
+        java.util.List<Object> params = new java.util.ArrayList<>();
+        params.add(productId);
+        if (rating != 0) {
+            sql.append(" AND f.rating = ?");
+            params.add(rating);
+        }
+        if (cursor != null) {
+            Object[] position = decodeCursor(cursor);
+            sql.append(" AND (f.created_at < ? OR (f.created_at = ? AND f.feedback_id < ?))");
+            params.add(position[0]);
+            params.add(position[0]);
+            params.add(position[1]);
+        }
+        // One extra row tells us whether another page exists
+        sql.append(" ORDER BY f.created_at DESC, f.feedback_id DESC LIMIT ?");
+        params.add(limit + 1);
+
+        ReviewPage page = new ReviewPage();
         try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, productId);
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Review review = new Review();
-                    review.feedbackId = rs.getInt("feedback_id");
-                    review.userId = rs.getInt("user_id");
-                    review.username = rs.getString("username");
-                    review.rating = rs.getInt("rating");
-                    review.comment = rs.getString("comment");
-                    review.createdAt = rs.getTimestamp("created_at");
-                    reviews.add(review);
+                    if (page.reviews.size() == limit) {
+                        Review last = page.reviews.get(limit - 1);
+                        page.nextCursor = encodeCursor(last.createdAt, last.feedbackId);
+                        break;
+                    }
+                    page.reviews.add(readReview(rs));
                 }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-        return reviews;
+        return page;
+    }
+
+    // Opaque to clients: base64url("<created_at millis>.<nanos>:<feedback_id>"); nanos keep sub-millisecond timestamps exact
+    static String encodeCursor(java.sql.Timestamp createdAt, int feedbackId) {
+        String raw = createdAt.getTime() + "." + createdAt.getNanos() + ":" + feedbackId;
+        return java.util.Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+    static Object[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(java.util.Base64.getUrlDecoder().decode(cursor), java.nio.charset.StandardCharsets.UTF_8);
+            int dot = raw.indexOf('.');
+            int sep = raw.indexOf(':');
+            java.sql.Timestamp createdAt = new java.sql.Timestamp(Long.parseLong(raw.substring(0, dot)));
+            createdAt.setNanos(Integer.parseInt(raw.substring(dot + 1, sep)));
+            return new Object[] { createdAt, Integer.parseInt(raw.substring(sep + 1)) };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private static Review readReview(ResultSet rs) throws SQLException {
+        Review review = new Review();
+        review.feedbackId = rs.getInt("feedback_id");
+        review.userId = rs.getInt("user_id");
+        review.username = rs.getString("username");
+        review.rating = rs.getInt("rating");
+        review.comment = rs.getString("comment");
+        review.createdAt = rs.getTimestamp("created_at");
+        return review;
     }
 
     
@@ -133,4 +400,37 @@ public class FeedbackDAO {
         public String comment;
         public java.sql.Timestamp createdAt;
     }
+
+    // A review to be stored; see addFeedbackBatch and ReviewIntake
+    public static class NewReview {
+        public final int userId;
+        public final int productId;
+        public final int orderId;
+        public final int rating;
+        public final String comment;
+
+        public NewReview(int userId, int productId, int orderId, int rating, String comment) {
+            this.userId = userId;
+            this.productId = productId;
+            this.orderId = orderId;
+            this.rating = rating;
+            this.comment = comment;
+        }
+    }
+
+    public static class ProductSummary {
+        public int productId;
+        public double avgRating;
+        public int count;
+        // stars[i] is the number of (i + 1)-star reviews
+        public int[] stars = new int[5];
+        // Newest first; nextCursor continues them through /api/feedback/reviews/{productId}
+        public java.util.List<Review> reviews = new java.util.ArrayList<>();
+        public String nextCursor;
+    }
+
+    public static class ReviewPage {
+        public java.util.List<Review> reviews = new java.util.ArrayList<>();
+        public String nextCursor;
+    }
 }
@@ -0,0 +1,287 @@
+package com.fivestarsbakery.dao;
+
+import com.fivestarsbakery.cache.ProductCatalog;
+import com.fivestarsbakery.model.Product;
+import com.fivestarsbakery.util.AppConfig;
+import com.fivestarsbakery.util.DBConnection;
+import com.fivestarsbakery.util.PickupTimes;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * How much of each product has to be ready per pickup bucket (KITCHEN_PLAN_BUCKET_MINUTES), for the bake plan.
+ * - A day is loaded once from its own orders (by pickup_time, so the order history is never scanned)
+ *   and then kept up to date by checkout and cancellation, so repeated reads do no database work
+ * - Each day remembers which orders it has counted and which were cancelled, so an order committing
+ *   while its day loads is counted exactly once
+ * - Days older than KITCHEN_PLAN_TTL_MS are reloaded, which picks up orders taken by another instance
+ */
+public class KitchenPlan {
+
+    private static final int BUCKET_MINUTES = AppConfig.getInt("KITCHEN_PLAN_BUCKET_MINUTES", 60);
+    private static final long TTL_MS = AppConfig.getLong("KITCHEN_PLAN_TTL_MS", 600_000);
+
+    private static final KitchenPlan INSTANCE = new KitchenPlan();
+
+    // Days before today are dropped whenever a new day is loaded
+    private final ConcurrentHashMap<LocalDate, Day> days = new ConcurrentHashMap<>();
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder dayLoads = new LongAdder();
+    private final LongAdder placed = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    private KitchenPlan() {
+    }
+
+    public static KitchenPlan getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * An order (productId -> quantity) has committed for this pickup time.
+     */
+    public void placed(int orderId, LocalDateTime pickup, Map<Integer, Integer> quantities) {
+        if (pickup == null) return;
+        Day day = days.get(pickup.toLocalDate());
+        if (day != null) {
+            day.add(orderId, bucketOf(pickup.toLocalTime()), quantities);
+        }
+        placed.increment();
+    }
+
+    /**
+     * A stored order has been cancelled and committed; its items come off the plan.
+     */
+    public void cancelled(int orderId, LocalDateTime pickup, Map<Integer, Integer> quantities) {
+        if (pickup == null) return;
+        Day day = days.get(pickup.toLocalDate());
+        if (day != null) {
+            day.remove(orderId, bucketOf(pickup.toLocalTime()), quantities);
+        }
+        cancelled.increment();
+    }
+
+    /**
+     * The plan for the pickup dates from..to (inclusive): one entry per date and bucket that has orders,
+     * plus the totals per product. Cancelled orders are left out.
+     */
+    public Plan getPlan(LocalDate from, LocalDate to, ProductCatalog.Snapshot catalog) throws SQLException {
+        reads.increment();
+        Plan plan = new Plan();
+        plan.from = PickupTimes.DATE.format(from);
+        plan.to = PickupTimes.DATE.format(to);
+        plan.bucketMinutes = BUCKET_MINUTES;
+        Map<Integer, Integer> totals = new TreeMap<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            for (Map.Entry<Integer, Map<Integer, Integer>> bucket : day(date).snapshot().entrySet()) {
+                Bucket entry = new Bucket();
+                entry.date = PickupTimes.DATE.format(date);
+                entry.time = PickupTimes.TIME.format(LocalTime.MIDNIGHT.plusMinutes((long) bucket.getKey() * BUCKET_MINUTES));
+                entry.items = lines(bucket.getValue(), catalog);
+                plan.buckets.add(entry);
+                bucket.getValue().forEach((productId, quantity) -> totals.merge(productId, quantity, Integer::sum));
+            }
+        }
+        plan.totals = lines(totals, catalog);
+        return plan;
+    }
+
+    private static List<Line> lines(Map<Integer, Integer> quantities, ProductCatalog.Snapshot catalog) {
+        List<Line> lines = new ArrayList<>(quantities.size());
+        for (Map.Entry<Integer, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            Product product = catalog != null ? catalog.getById(entry.getKey()) : null;
+            Line line = new Line();
+            line.productId = entry.getKey();
+            line.name = product != null ? product.getName() : "product #" + entry.getKey();
+            line.quantity = entry.getValue();
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private static int bucketOf(LocalTime time) {
+        return time.toSecondOfDay() / 60 / BUCKET_MINUTES;
+    }
+
+    /**
+     * The loaded day, loading it (or reloading it once stale) first.
+     * The new Day is published before its query runs, so every commit either happened before the query
+     * and is in its result, or reaches the Day through placed()/cancelled() afterwards.
+     */
+    private Day day(LocalDate date) throws SQLException {
+        while (true) {
+            Day day = days.get(date);
+            if (day != null && !day.isStale()) {
+                return day.await();
+            }
+            Day fresh = new Day();
+            boolean published = day == null ? days.putIfAbsent(date, fresh) == null : days.replace(date, day, fresh);
+            if (!published) continue;
+            try {
+                fresh.load(date);
+                dayLoads.increment();
+            } catch (SQLException | RuntimeException e) {
+                days.remove(date, fresh);
+                throw e;
+            } finally {
+                fresh.ready.countDown();
+            }
+            if (day == null) {
+                LocalDate today = PickupTimes.now().toLocalDate();
+                days.keySet().removeIf(loaded -> loaded.isBefore(today) && !loaded.equals(date));
+            }
+            return fresh;
+        }
+    }
+
+    public static Stats getStats() {
+        KitchenPlan plan = INSTANCE;
+        Stats stats = new Stats();
+        stats.bucketMinutes = BUCKET_MINUTES;
+        stats.daysLoaded = plan.days.size();
+        stats.dayLoads = plan.dayLoads.sum();
+        stats.reads = plan.reads.sum();
+        stats.placed = plan.placed.sum();
+        stats.cancelled = plan.cancelled.sum();
+        return stats;
+    }
+
+    private static class Day {
+        final CountDownLatch ready = new CountDownLatch(1);
+        final ReentrantLock lock = new ReentrantLock();
+        final Set<Integer> counted = new HashSet<>();
+        final Set<Integer> cancelledOrders = new HashSet<>();
+        // Bucket -> productId -> quantity
+        final TreeMap<Integer, Map<Integer, Integer>> buckets = new TreeMap<>();
+        volatile long loadedAt;
+
+        void add(int orderId, int bucket, Map<Integer, Integer> quantities) {
+            lock.lock();
+            try {
+                if (cancelledOrders.contains(orderId) || !counted.add(orderId)) return;
+                Map<Integer, Integer> products = buckets.computeIfAbsent(bucket, k -> new HashMap<>());
+                quantities.forEach((productId, quantity) -> products.merge(productId, quantity, Integer::sum));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(int orderId, int bucket, Map<Integer, Integer> quantities) {
+            lock.lock();
+            try {
+                // Cancelled is final, so the order can never be counted again, even by a load still running
+                cancelledOrders.add(orderId);
+                if (!counted.remove(orderId)) return;
+                Map<Integer, Integer> products = buckets.get(bucket);
+                if (products == null) return;
+                quantities.forEach((productId, quantity) -> products.merge(productId, -quantity,
+                        (left, taken) -> left + taken == 0 ? null : left + taken));
+                if (products.isEmpty()) buckets.remove(bucket);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        TreeMap<Integer, Map<Integer, Integer>> snapshot() {
+            lock.lock();
+            try {
+                TreeMap<Integer, Map<Integer, Integer>> copy = new TreeMap<>();
+                buckets.forEach((bucket, products) -> copy.put(bucket, new HashMap<>(products)));
+                return copy;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void load(LocalDate date) throws SQLException {
+            OrderDAO.ensureMigrated();
+            String sql = "SELECT o.order_id, o.pickup_time, oi.product_id, oi.quantity FROM orders o"
+                    + " JOIN order_items oi ON oi.order_id = o.order_id"
+                    + " WHERE o.pickup_time >= ? AND o.pickup_time < ? AND o.status <> 'CANCELLED'";
+            Map<Integer, Map<Integer, Integer>> orders = new HashMap<>();
+            Map<Integer, Integer> bucketByOrder = new HashMap<>();
+            try (Connection conn = DBConnection.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setObject(1, date.atStartOfDay());
+                ps.setObject(2, date.plusDays(1).atStartOfDay());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int orderId = rs.getInt("order_id");
+                        bucketByOrder.putIfAbsent(orderId,
+                                bucketOf(rs.getObject("pickup_time", LocalDateTime.class).toLocalTime()));
+                        orders.computeIfAbsent(orderId, k -> new HashMap<>())
+                                .merge(rs.getInt("product_id"), rs.getInt("quantity"), Integer::sum);
+                    }
+                }
+            }
+            orders.forEach((orderId, quantities) -> add(orderId, bucketByOrder.get(orderId), quantities));
+            loadedAt = System.currentTimeMillis();
+        }
+
+        boolean isStale() {
+            long at = loadedAt;
+            return at != 0 && System.currentTimeMillis() - at > TTL_MS;
+        }
+
+        Day await() throws SQLException {
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while the kitchen plan was loading");
+            }
+            if (loadedAt == 0) {
+                throw new SQLException("Kitchen plan could not be loaded");
+            }
+            return this;
+        }
+    }
+
+    public static class Plan {
+        public String from;
+        public String to;
+        public int bucketMinutes;
+        public List<Bucket> buckets = new ArrayList<>();
+        public List<Line> totals;
+    }
+
+    public static class Bucket {
+        public String date;
+        // Start of the pickup bucket, "hh:mm a"
+        public String time;
+        public List<Line> items;
+    }
+
+    public static class Line {
+        public int productId;
+        public String name;
+        public int quantity;
+    }
+
+    public static class Stats {
+        public int bucketMinutes;
+        public int daysLoaded;
+        public long dayLoads;
+        public long reads;
+        public long placed;
+        public long cancelled;
+    }
+}
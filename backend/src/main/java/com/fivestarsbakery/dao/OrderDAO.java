@@ -1,15 +1,29 @@
 package com.fivestarsbakery.dao;
 
+import com.fivestarsbakery.cache.IdempotencyStore;
+import com.fivestarsbakery.cache.ProductCatalog;
 import com.fivestarsbakery.model.Order;
 import com.fivestarsbakery.model.OrderItem;
+import com.fivestarsbakery.model.OrderStatus;
+import com.fivestarsbakery.model.Product;
+import com.fivestarsbakery.util.AppConfig;
 import com.fivestarsbakery.util.DBConnection;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
+import com.fivestarsbakery.util.InsufficientStockException;
+import com.fivestarsbakery.util.PickupTimes;
+import com.fivestarsbakery.util.SlotFullException;
 
 import java.sql.*;
-import java.text.SimpleDateFormat;
-import java.text.ParseException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
 
 public class OrderDAO {
+
+    private static final int FETCH_SIZE = AppConfig.getInt("ORDER_FETCH_SIZE", 500);
     
     // Auto-migrate database to include payment_method column
     static {
@@ -32,81 +46,256 @@ public class OrderDAO {
         } catch (Exception e) {
             System.err.println("Auto-migration failed: " + e.getMessage());
         }
-    }
 
-    
-    // Helper method to parse pickup date and time to Timestamp
-    private Timestamp parsePickupDateTime(String pickupDate, String pickupTime) {
-        if (pickupDate == null || pickupTime == null || pickupDate.isEmpty() || pickupTime.isEmpty()) {
-            return new Timestamp(System.currentTimeMillis()); 
-        }
-        try {
-            
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd hh:mm a");
-            java.util.Date date = sdf.parse(pickupDate + " " + pickupTime);
-            return new Timestamp(date.getTime());
-        } catch (ParseException e) {
-            e.printStackTrace();
-            return new Timestamp(System.currentTimeMillis()); 
+        // Keyset indexes for the admin order list and per-user history, the stock ledger's pending marker,
+        // the per-user idempotency key with its request fingerprint, and the pickup slot counts
+        try (Connection conn = DBConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = conn.getMetaData().getColumns(null, null, "orders", "stock_pending")) {
+                if (!rs.next()) {
+                    stmt.execute("ALTER TABLE orders ADD COLUMN stock_pending INT NOT NULL DEFAULT 0");
+                    System.out.println("Database Migrated: Added 'stock_pending' column to 'orders' table.");
+                }
+            }
+            try (ResultSet rs = conn.getMetaData().getColumns(null, null, "orders", "idempotency_key")) {
+                if (!rs.next()) {
+                    stmt.execute("ALTER TABLE orders ADD COLUMN idempotency_key VARCHAR(64) NULL");
+                    System.out.println("Database Migrated: Added 'idempotency_key' column to 'orders' table.");
+                }
+            }
+            try (ResultSet rs = conn.getMetaData().getColumns(null, null, "orders", "idempotency_fingerprint")) {
+                if (!rs.next()) {
+                    stmt.execute("ALTER TABLE orders ADD COLUMN idempotency_fingerprint CHAR(64) NULL");
+                    System.out.println("Database Migrated: Added 'idempotency_fingerprint' column to 'orders' table.");
+                }
+            }
+            if (!hasIndex(conn, "orders", "idx_orders_created")) {
+                stmt.execute("CREATE INDEX idx_orders_created ON orders (created_at, order_id)");
+                System.out.println("Database Migrated: Added 'idx_orders_created' index to 'orders' table.");
+            }
+            if (!hasIndex(conn, "orders", "idx_orders_status_created")) {
+                stmt.execute("CREATE INDEX idx_orders_status_created ON orders (status, created_at, order_id)");
+                System.out.println("Database Migrated: Added 'idx_orders_status_created' index to 'orders' table.");
+            }
+            if (!hasIndex(conn, "orders", "idx_orders_user_created")) {
+                stmt.execute("CREATE INDEX idx_orders_user_created ON orders (user_id, created_at, order_id)");
+                System.out.println("Database Migrated: Added 'idx_orders_user_created' index to 'orders' table.");
+            }
+            if (!hasIndex(conn, "orders", "idx_orders_stock_pending")) {
+                stmt.execute("CREATE INDEX idx_orders_stock_pending ON orders (stock_pending)");
+                System.out.println("Database Migrated: Added 'idx_orders_stock_pending' index to 'orders' table.");
+            }
+            if (!hasIndex(conn, "orders", "uq_orders_idempotency")) {
+                stmt.execute("CREATE UNIQUE INDEX uq_orders_idempotency ON orders (user_id, idempotency_key)");
+                System.out.println("Database Migrated: Added 'uq_orders_idempotency' index to 'orders' table.");
+            }
+            if (!hasIndex(conn, "orders", "idx_orders_pickup")) {
+                stmt.execute("CREATE INDEX idx_orders_pickup ON orders (pickup_time)");
+                System.out.println("Database Migrated: Added 'idx_orders_pickup' index to 'orders' table.");
+            }
+        } catch (Exception e) {
+            System.err.println("Index migration failed: " + e.getMessage());
         }
     }
 
-    
-    private String formatPickupDate(Timestamp ts) {
-        if (ts == null) return null;
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        return sdf.format(ts);
+    // Callers that need the migrated schema outside OrderDAO call this to run the static block first
+    static void ensureMigrated() {
     }
 
-    
-    private String formatPickupTime(Timestamp ts) {
-        if (ts == null) return null;
-        SimpleDateFormat sdf = new SimpleDateFormat("hh:mm a");
-        return sdf.format(ts);
+    static boolean hasIndex(Connection conn, String table, String indexName) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getIndexInfo(null, null, table, false, false)) {
+            while (rs.next()) {
+                if (indexName.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     public boolean createOrder(Order order) {
-        String insertOrderSql = "INSERT INTO orders (user_id, total_amount, status, pickup_time, payment_method) VALUES (?, ?, 'PENDING', ?, ?)";
-        String insertItemSql = "INSERT INTO order_items (order_id, product_id, quantity, price_at_purchase) VALUES (?, ?, ?, ?)";
+        return createOrder(order, null);
+    }
+
+    /**
+     * With an idempotency key, at most one order per (user, key) is ever stored.
+     * If the key was already used, nothing is written and the order is filled in with the
+     * stored order's id and total instead, so a retry sees the original result. That lookup runs
+     * before pricing, the pickup slot and stock, so a retry is never turned away by them.
+     * A key reused for a different cart throws IdempotencyStore.KeyReusedException.
+     * The pickup time must fall in a PickupSlots slot with room (IllegalArgumentException / SlotFullException).
+     */
+    public boolean createOrder(Order order, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            try {
+                if (findExistingOrder(order, idempotencyKey)) {
+                    return true;
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        ProductDAO productDAO = new ProductDAO();
+        java.util.Map<Integer, Integer> quantities = priceOrder(order, productDAO);
+        if (quantities == null) {
+            return false;
+        }
 
         Connection conn = null;
-        PreparedStatement psOrder = null;
-        PreparedStatement psItem = null;
+        StockLedger ledger = null;
+        boolean reserved = false;
+        boolean stockChanging = false;
+        PickupSlots slots = PickupSlots.getInstance();
+        PickupSlots.Slot slot = null;
+        LocalDateTime pickup = PickupTimes.parse(order.getPickupDate(), order.getPickupTime());
 
         try {
+            // A full pickup slot turns the order away before any stock or database work
+            slot = slots.reserve(pickup);
+
+            // With the ledger on, stock is admitted in memory and the product rows are never locked here
+            ledger = StockLedger.getInstance();
+            if (ledger != null) {
+                ledger.reserve(quantities);
+                reserved = true;
+            }
+
             conn = DBConnection.getConnection();
             conn.setAutoCommit(false); 
 
             
-            // 1. Insert Order
-            psOrder = conn.prepareStatement(insertOrderSql, Statement.RETURN_GENERATED_KEYS);
+            // 1. Insert Order and its items
+            int orderId;
+            try {
+                orderId = insertOrder(conn, order, idempotencyKey, ledger != null);
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // A concurrent attempt with this key committed after findExistingOrder looked
+                if (idempotencyKey == null) throw e;
+                conn.rollback();
+                if (!loadExistingOrder(conn, order, idempotencyKey)) throw e;
+                // The stored order already holds its seat; ours is given back below
+                return true;
+            }
+
+            
+            // 2. Deduct Stock for all items at once
+            if (ledger == null) {
+                productDAO.reserveStock(conn, quantities);
+                productDAO.stockChanging();
+                stockChanging = true;
+            }
+
+            conn.commit(); 
+            order.setOrderId(orderId);
+            slot = null;
+            if (ledger != null) {
+                // The catalog follows the ledger's flush, when the products table does
+                ledger.commit(orderId, quantities);
+                reserved = false;
+            } else {
+                productDAO.stockChanged(negate(quantities));
+                stockChanging = false;
+            }
+            KitchenPlan.getInstance().placed(orderId, pickup, quantities);
+            return true;
+
+        } catch (DatabaseUnavailableException e) {
+            throw e;
+        } catch (InsufficientStockException | SlotFullException | IllegalArgumentException
+                 | IdempotencyStore.KeyReusedException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
+            return false;
+        } finally {
+            if (stockChanging) {
+                productDAO.stockUnchanged();
+            }
+            if (reserved) {
+                ledger.release(quantities);
+            }
+            if (slot != null) {
+                slots.release(slot);
+            }
+            if (conn != null) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Prices the order from the catalog and returns its quantities per product,
+     * or null if the catalog cannot be loaded.
+     */
+    java.util.Map<Integer, Integer> priceOrder(Order order, ProductDAO productDAO) {
+        // Prices come from the catalog, never from the client
+        ProductCatalog.Snapshot catalog = productDAO.getCatalogSnapshot();
+        if (catalog == null) {
+            System.err.println("Cannot price order: product catalog unavailable");
+            return null;
+        }
+        applyCatalogPrices(order, catalog);
+
+        java.util.Map<Integer, Integer> quantities = new java.util.HashMap<>();
+        for (OrderItem item : order.getItems()) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    /**
+     * Inserts the order row and its items inside the caller's transaction and returns the new id.
+     * A reused idempotency key surfaces as SQLIntegrityConstraintViolationException.
+     * The key is stored with the request's fingerprint, so a later reuse can be checked against it.
+     */
+    int insertOrder(Connection conn, Order order, String idempotencyKey, boolean stockPending) throws SQLException {
+        String insertOrderSql = "INSERT INTO orders (user_id, total_amount, status, pickup_time, payment_method, stock_pending, idempotency_key, idempotency_fingerprint) VALUES (?, ?, 'PENDING', ?, ?, ?, ?, ?)";
+        String insertItemSql = "INSERT INTO order_items (order_id, product_id, quantity, price_at_purchase) VALUES (?, ?, ?, ?)";
+
+        int orderId;
+        try (PreparedStatement psOrder = conn.prepareStatement(insertOrderSql, Statement.RETURN_GENERATED_KEYS)) {
             psOrder.setInt(1, order.getUserId());
             psOrder.setBigDecimal(2, order.getTotalAmount());
             
-            // Parse pickup date and time into a Timestamp
-            Timestamp pickupTimestamp = parsePickupDateTime(order.getPickupDate(), order.getPickupTime());
-            psOrder.setTimestamp(3, pickupTimestamp);
+            // DATETIME carries no zone, so bind the wall-clock value as-is; PickupSlots has already checked it
+            psOrder.setObject(3, PickupTimes.parse(order.getPickupDate(), order.getPickupTime()));
             psOrder.setString(4, order.getPaymentMethod());
+            psOrder.setInt(5, stockPending ? -1 : 0);
+            psOrder.setString(6, idempotencyKey);
+            psOrder.setString(7, idempotencyKey == null ? null : requestFingerprint(order));
 
-            int rows = psOrder.executeUpdate();
-            if (rows == 0) {
+            if (psOrder.executeUpdate() == 0) {
                 throw new SQLException("Creating order failed, no rows affected.");
             }
-
-            
-            // 2. Get Generated Order ID
-            int orderId = 0;
             try (ResultSet generatedKeys = psOrder.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    orderId = generatedKeys.getInt(1);
-                } else {
+                if (!generatedKeys.next()) {
                     throw new SQLException("Creating order failed, no ID obtained.");
                 }
+                orderId = generatedKeys.getInt(1);
             }
+        }
 
-            
-            // 3. Insert Order Items
-            psItem = conn.prepareStatement(insertItemSql);
+        try (PreparedStatement psItem = conn.prepareStatement(insertItemSql)) {
             for (OrderItem item : order.getItems()) {
                 psItem.setInt(1, orderId);
                 psItem.setInt(2, item.getProductId());
@@ -115,43 +304,103 @@ public class OrderDAO {
                 psItem.addBatch();
             }
             psItem.executeBatch();
+        }
+        return orderId;
+    }
 
-            
-            // 4. Deduct Stock for each item
-            ProductDAO productDAO = new ProductDAO();
-            for (OrderItem item : order.getItems()) {
-                productDAO.deductStock(conn, item.getProductId(), item.getQuantity());
-            }
+    static java.util.Map<Integer, Integer> negate(java.util.Map<Integer, Integer> quantities) {
+        java.util.Map<Integer, Integer> deltas = new java.util.HashMap<>();
+        quantities.forEach((productId, quantity) -> deltas.put(productId, -quantity));
+        return deltas;
+    }
 
-            conn.commit(); 
-            return true;
+    /**
+     * Fills in the order already stored under this idempotency key, maybe before a restart or by
+     * another instance, and returns true; false if the key has not been used yet.
+     * Throws IdempotencyStore.KeyReusedException if the stored order was placed for a different request.
+     */
+    boolean findExistingOrder(Order order, String idempotencyKey) throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            return loadExistingOrder(conn, order, idempotencyKey);
+        }
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
+    boolean loadExistingOrder(Connection conn, Order order, String idempotencyKey) throws SQLException {
+        String sql = "SELECT order_id, total_amount, idempotency_fingerprint FROM orders WHERE user_id = ? AND idempotency_key = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, order.getUserId());
+            ps.setString(2, idempotencyKey);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return false;
+                // Orders stored before the fingerprint column existed have none to compare
+                String fingerprint = rs.getString("idempotency_fingerprint");
+                if (fingerprint != null && !fingerprint.equals(requestFingerprint(order))) {
+                    throw new IdempotencyStore.KeyReusedException();
                 }
+                order.setOrderId(rs.getInt("order_id"));
+                order.setTotalAmount(rs.getBigDecimal("total_amount"));
+                return true;
             }
-            return false;
-        } finally {
-            try {
-                if (psOrder != null)
-                    psOrder.close();
-                if (psItem != null)
-                    psItem.close();
-                if (conn != null)
-                    conn.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        }
+    }
+
+    /**
+     * SHA-256 over what the client chose (pickup, payment and the items in cart order), as hex.
+     * Prices are left out: they come from the catalog, not the request.
+     */
+    static String requestFingerprint(Order order) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(order.getUserId()).append('|').append(order.getPickupDate()).append('|')
+                .append(order.getPickupTime()).append('|').append(order.getPaymentMethod());
+        for (OrderItem item : order.getItems()) {
+            sb.append('|').append(item.getProductId()).append('x').append(item.getQuantity());
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return java.util.HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Sets each item's price to the product's current catalog price and recomputes the total,
+     * so a tampered or stale cart cannot change what is charged. Needs no database round trips.
+     * Throws IllegalArgumentException for unknown products or non-positive quantities.
+     */
+    static void applyCatalogPrices(Order order, ProductCatalog.Snapshot catalog) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (OrderItem item : order.getItems()) {
+            Product product = catalog.getById(item.getProductId());
+            if (product == null) {
+                throw new IllegalArgumentException("Product " + item.getProductId() + " is no longer available");
             }
+            if (item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Invalid quantity for " + product.getName());
+            }
+            BigDecimal price = BigDecimal.valueOf(product.getPrice()).setScale(2, RoundingMode.HALF_UP);
+            item.setPrice(price);
+            total = total.add(price.multiply(BigDecimal.valueOf(item.getQuantity())));
         }
+        order.setTotalAmount(total);
     }
 
     public java.util.List<Order> getOrdersByUserId(int userId) {
         java.util.List<Order> orders = new java.util.ArrayList<>();
+        try {
+            streamOrdersByUserId(userId, orders::add);
+        } catch (SQLException | java.io.IOException e) {
+            e.printStackTrace();
+        }
+        return orders;
+    }
+
+    /**
+     * Hands each of the user's orders to the sink as soon as its last item has been read,
+     * so memory stays flat however long the history is. Newest first.
+     */
+    public void streamOrdersByUserId(int userId, OrderSink sink) throws SQLException, java.io.IOException {
+        // order_id breaks created_at ties, which keeps each order's rows adjacent
         String sql = "SELECT o.order_id, o.user_id, o.total_amount, o.status, o.pickup_time, o.created_at, o.payment_method, " +
                 "oi.item_id, oi.product_id, oi.quantity, oi.price_at_purchase, " +
                 "p.name as product_name, p.image_url, " +
@@ -161,205 +410,390 @@ public class OrderDAO {
                 "JOIN products p ON oi.product_id = p.product_id " +
                 "LEFT JOIN feedback f ON o.order_id = f.order_id AND oi.product_id = f.product_id " +
                 "WHERE o.user_id = ? " +
-                "ORDER BY o.created_at DESC";
-
-        Connection conn = null;
-        PreparedStatement ps = null;
-        ResultSet rs = null;
+                "ORDER BY o.created_at DESC, o.order_id DESC";
 
-        try {
-            conn = DBConnection.getConnection();
-            ps = conn.prepareStatement(sql);
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            DBConnection.streamResults(ps, FETCH_SIZE);
             ps.setInt(1, userId);
-            rs = ps.executeQuery();
-
-            java.util.Map<Integer, Order> orderMap = new java.util.LinkedHashMap<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                readOrders(rs, false, sink);
+            }
+        }
+    }
 
-            while (rs.next()) {
-                int orderId = rs.getInt("order_id");
-                Order order = orderMap.get(orderId);
-
-                if (order == null) {
-                    order = new Order();
-                    order.setOrderId(orderId);
-                    order.setUserId(rs.getInt("user_id"));
-                    order.setTotalAmount(rs.getBigDecimal("total_amount"));
-                    order.setStatus(rs.getString("status"));
-                    Timestamp pickupTs = rs.getTimestamp("pickup_time");
-                    order.setPickupDate(formatPickupDate(pickupTs));
-                    order.setPickupTime(formatPickupTime(pickupTs));
-                    order.setCreatedAt(rs.getTimestamp("created_at"));
-                    order.setPaymentMethod(rs.getString("payment_method"));
-                    order.setItems(new java.util.ArrayList<>());
-                    orders.add(order);
-                    orderMap.put(orderId, order);
+    // Rows must arrive grouped by order_id; each order is emitted once the next one starts
+    static void readOrders(ResultSet rs, boolean withUsername, OrderSink sink) throws SQLException, java.io.IOException {
+        Order order = null;
+        while (rs.next()) {
+            int orderId = rs.getInt("order_id");
+            if (order == null || order.getOrderId() != orderId) {
+                if (order != null) {
+                    sink.accept(order);
                 }
-
-                OrderItem item = new OrderItem();
-                item.setItemId(rs.getInt("item_id"));
-                item.setOrderId(orderId);
-                item.setProductId(rs.getInt("product_id"));
-                item.setQuantity(rs.getInt("quantity"));
-                item.setPrice(rs.getBigDecimal("price_at_purchase"));
-                item.setProductName(rs.getString("product_name")); 
-                item.setImageUrl(rs.getString("image_url")); 
-                
-                int rating = rs.getInt("rating");
-                if (!rs.wasNull()) {
-                    item.setRating(rating);
-                    item.setComment(rs.getString("review_comment"));
+                order = new Order();
+                order.setOrderId(orderId);
+                order.setUserId(rs.getInt("user_id"));
+                order.setTotalAmount(rs.getBigDecimal("total_amount"));
+                order.setStatus(rs.getString("status"));
+                LocalDateTime pickup = rs.getObject("pickup_time", LocalDateTime.class);
+                order.setPickupDate(PickupTimes.formatDate(pickup));
+                order.setPickupTime(PickupTimes.formatTime(pickup));
+                order.setCreatedAt(rs.getTimestamp("created_at"));
+                order.setPaymentMethod(rs.getString("payment_method"));
+                if (withUsername) {
+                    order.setUsername(rs.getString("username"));
                 }
-                order.getItems().add(item);
+                order.setItems(new java.util.ArrayList<>());
             }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null)
-                    rs.close();
-                if (ps != null)
-                    ps.close();
-                if (conn != null)
-                    conn.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+            OrderItem item = new OrderItem();
+            item.setItemId(rs.getInt("item_id"));
+            item.setOrderId(orderId);
+            item.setProductId(rs.getInt("product_id"));
+            item.setQuantity(rs.getInt("quantity"));
+            item.setPrice(rs.getBigDecimal("price_at_purchase"));
+            item.setProductName(rs.getString("product_name"));
+            item.setImageUrl(rs.getString("image_url"));
+
+            int rating = rs.getInt("rating");
+            if (!rs.wasNull()) {
+                item.setRating(rating);
+                item.setComment(rs.getString("review_comment"));
             }
+            order.getItems().add(item);
+        }
+        if (order != null) {
+            sink.accept(order);
         }
-
-        return orders;
     }
 
-    
+    /**
+     * One page of the admin order list, newest first, keyed on (created_at, order_id).
+     * Only the page's order ids are selected first, so the item/product/feedback join
+     * touches at most `limit` orders no matter how long the history is.
+     * nextCursor is null on the last page. Throws IllegalArgumentException for a bad cursor.
+     */
+    public OrderPage getOrdersPage(OrderFilter filter, String cursor, int limit) throws SQLException, java.io.IOException {
+        OrderPage page = new OrderPage();
+        StringBuilder idSql = new StringBuilder("SELECT o.order_id, o.created_at FROM orders o WHERE 1=1");
+        java.util.List<Object> params = new java.util.ArrayList<>();
+
+        if (filter.status != null) {
+            idSql.append(" AND o.status = ?");
+            params.add(filter.status);
+        }
+        if (filter.createdFrom != null) {
+            idSql.append(" AND o.created_at >= ?");
+            params.add(filter.createdFrom);
+        }
+        if (filter.createdTo != null) {
+            idSql.append(" AND o.created_at < ?");
+            params.add(filter.createdTo);
+        }
+        if (filter.pickupFrom != null) {
+            idSql.append(" AND o.pickup_time >= ?");
+            params.add(filter.pickupFrom);
+        }
+        if (filter.pickupTo != null) {
+            idSql.append(" AND o.pickup_time < ?");
+            params.add(filter.pickupTo);
+        }
+        if (cursor != null) {
+            Object[] position = decodeCursor(cursor);
+            idSql.append(" AND (o.created_at < ? OR (o.created_at = ? AND o.order_id < ?))");
+            params.add(position[0]);
+            params.add(position[0]);
+            params.add(position[1]);
+        }
+        // One extra row tells us whether another page exists
+        idSql.append(" ORDER BY o.created_at DESC, o.order_id DESC LIMIT ?");
+        params.add(limit + 1);
+
+        try (Connection conn = DBConnection.getConnection()) {
+            java.util.List<Integer> ids = new java.util.ArrayList<>();
+            Timestamp lastCreatedAt = null;
+            try (PreparedStatement ps = conn.prepareStatement(idSql.toString())) {
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (ids.size() == limit) {
+                            page.nextCursor = encodeCursor(lastCreatedAt, ids.get(ids.size() - 1));
+                            break;
+                        }
+                        ids.add(rs.getInt("order_id"));
+                        lastCreatedAt = rs.getTimestamp("created_at");
+                    }
+                }
+            }
+            if (ids.isEmpty()) {
+                return page;
+            }
 
-    public java.util.List<Order> getAllOrders() {
-        java.util.List<Order> orders = new java.util.ArrayList<>();
-        String sql = "SELECT o.order_id, o.user_id, o.total_amount, o.status, o.pickup_time, o.created_at, o.payment_method, " +
-                "u.username, " +
-                "oi.item_id, oi.product_id, oi.quantity, oi.price_at_purchase, " +
-                "p.name as product_name, p.image_url, " +
-                "f.rating, f.comment as review_comment " +
-                "FROM orders o " +
-                "JOIN users u ON o.user_id = u.user_id " +
-                "JOIN order_items oi ON o.order_id = oi.order_id " +
-                "JOIN products p ON oi.product_id = p.product_id " +
-                "LEFT JOIN feedback f ON o.order_id = f.order_id AND oi.product_id = f.product_id " +
-                "ORDER BY o.created_at DESC";
+            String placeholders = String.join(",", java.util.Collections.nCopies(ids.size(), "?"));
+            String sql = "SELECT o.order_id, o.user_id, o.total_amount, o.status, o.pickup_time, o.created_at, o.payment_method, " +
+                    "u.username, " +
+                    "oi.item_id, oi.product_id, oi.quantity, oi.price_at_purchase, " +
+                    "p.name as product_name, p.image_url, " +
+                    "f.rating, f.comment as review_comment " +
+                    "FROM orders o " +
+                    "JOIN users u ON o.user_id = u.user_id " +
+                    "JOIN order_items oi ON o.order_id = oi.order_id " +
+                    "JOIN products p ON oi.product_id = p.product_id " +
+                    "LEFT JOIN feedback f ON o.order_id = f.order_id AND oi.product_id = f.product_id " +
+                    "WHERE o.order_id IN (" + placeholders + ") " +
+                    "ORDER BY o.created_at DESC, o.order_id DESC, oi.item_id";
 
-        Connection conn = null;
-        PreparedStatement ps = null;
-        ResultSet rs = null;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    ps.setInt(i + 1, ids.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    readOrders(rs, true, page.orders::add);
+                }
+            }
+        }
+        return page;
+    }
 
-        try {
-            conn = DBConnection.getConnection();
-            ps = conn.prepareStatement(sql);
-            rs = ps.executeQuery();
+    // Opaque to clients: base64url("<created_at millis>.<nanos>:<order_id>"); nanos keep sub-millisecond timestamps exact
+    static String encodeCursor(Timestamp createdAt, int orderId) {
+        String raw = createdAt.getTime() + "." + createdAt.getNanos() + ":" + orderId;
+        return java.util.Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
 
-            java.util.Map<Integer, Order> orderMap = new java.util.LinkedHashMap<>();
+    static Object[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(java.util.Base64.getUrlDecoder().decode(cursor), java.nio.charset.StandardCharsets.UTF_8);
+            int dot = raw.indexOf('.');
+            int sep = raw.indexOf(':');
+            Timestamp createdAt = new Timestamp(Long.parseLong(raw.substring(0, dot)));
+            createdAt.setNanos(Integer.parseInt(raw.substring(dot + 1, sep)));
+            return new Object[] { createdAt, Integer.parseInt(raw.substring(sep + 1)) };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
 
-            while (rs.next()) {
-                int orderId = rs.getInt("order_id");
-                Order order = orderMap.get(orderId);
-
-                if (order == null) {
-                    order = new Order();
-                    order.setOrderId(orderId);
-                    order.setUserId(rs.getInt("user_id"));
-                    order.setTotalAmount(rs.getBigDecimal("total_amount"));
-                    order.setStatus(rs.getString("status"));
-                    Timestamp pickupTs2 = rs.getTimestamp("pickup_time");
-                    order.setPickupDate(formatPickupDate(pickupTs2));
-                    order.setPickupTime(formatPickupTime(pickupTs2));
-                    order.setCreatedAt(rs.getTimestamp("created_at"));
-                    order.setPaymentMethod(rs.getString("payment_method"));
-                    order.setUsername(rs.getString("username"));
+    /**
+     * Admin list filters; null fields are not applied. Upper bounds are exclusive.
+     */
+    public static class OrderFilter {
+        public String status;
+        public Timestamp createdFrom;
+        public Timestamp createdTo;
+        public LocalDateTime pickupFrom;
+        public LocalDateTime pickupTo;
+    }
 
-                    order.setItems(new java.util.ArrayList<>());
-                    orders.add(order);
-                    orderMap.put(orderId, order);
-                }
+    @FunctionalInterface
+    public interface OrderSink {
+        void accept(Order order) throws java.io.IOException;
+    }
 
-                OrderItem item = new OrderItem();
-                item.setItemId(rs.getInt("item_id"));
-                item.setOrderId(orderId);
-                item.setProductId(rs.getInt("product_id"));
-                item.setQuantity(rs.getInt("quantity"));
-                item.setPrice(rs.getBigDecimal("price_at_purchase"));
-                item.setProductName(rs.getString("product_name"));
-                item.setImageUrl(rs.getString("image_url"));
-
-                int ratingAll = rs.getInt("rating");
-                if (!rs.wasNull()) {
-                    item.setRating(ratingAll);
-                    item.setComment(rs.getString("review_comment"));
-                }
-                order.getItems().add(item);
-            }
+    public static class OrderPage {
+        public java.util.List<Order> orders = new java.util.ArrayList<>();
+        public String nextCursor;
+    }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null)
-                    rs.close();
-                if (ps != null)
-                    ps.close();
-                if (conn != null)
-                    conn.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
-        }
-        return orders;
+    /**
+     * Moves one order to newStatus; see updateOrderStatuses.
+     * Returns its outcome, or null if the transaction failed.
+     */
+    public StatusChange updateOrderStatus(int orderId, OrderStatus newStatus) {
+        java.util.List<StatusChange> results = updateOrderStatuses(java.util.List.of(orderId), newStatus);
+        return results == null ? null : results.get(0);
     }
 
-    public boolean updateOrderStatus(int orderId, String newStatus) {
-        Connection conn = null;
+    /**
+     * Moves every listed order to newStatus, allowed only along OrderStatus's transition graph.
+     * - each order's status is read without locking and checked against the graph
+     * - the moves are one batch of compare-and-set updates (UPDATE ... WHERE order_id = ? AND status = ?) in one
+     *   transaction, so an order changed by someone else in the meantime is left alone instead of being locked
+     *   and overwritten
+     * - cancelling restores stock only for the orders whose update matched, with one update covering every
+     *   product, so stock comes back exactly once however many cancellations race
+     * Returns one result per distinct id, in the order given, or null if the transaction failed:
+     * UPDATED, UNCHANGED (already in newStatus), NOT_FOUND or CONFLICT (the graph does not allow the move
+     * from previousStatus, or another update got there first).
+     */
+    public java.util.List<StatusChange> updateOrderStatuses(java.util.Collection<Integer> orderIds, OrderStatus newStatus) {
+        java.util.Map<Integer, StatusChange> results = new java.util.LinkedHashMap<>();
+        for (Integer id : orderIds) {
+            StatusChange change = new StatusChange();
+            change.orderId = id;
+            results.putIfAbsent(id, change);
+        }
+        if (results.isEmpty()) return new java.util.ArrayList<>();
+
+        ProductDAO productDAO = new ProductDAO();
+        boolean cancelling = newStatus == OrderStatus.CANCELLED;
+        java.util.List<StatusChange> moving = new java.util.ArrayList<>();
+        java.util.List<Integer> updated = new java.util.ArrayList<>();
+        java.util.List<Integer> lost = new java.util.ArrayList<>();
+        java.util.Map<Integer, java.util.Map<Integer, Integer>> itemsByOrder = new java.util.HashMap<>();
+        java.util.Map<Integer, Integer> stockDeltas = new java.util.HashMap<>();
+        java.util.Map<Integer, LocalDateTime> pickups = new java.util.HashMap<>();
+        boolean stockChanging = false;
         try {
-            conn = DBConnection.getConnection();
-            conn.setAutoCommit(false);
+            // The ledger restores stock itself; the orders are only marked as owing it back
+            StockLedger ledger = cancelling ? StockLedger.getInstance() : null;
+            try (Connection conn = DBConnection.getConnection()) {
+                java.util.Map<Integer, String> current = readStatuses(conn, new java.util.ArrayList<>(results.keySet()));
+                for (StatusChange change : results.values()) {
+                    change.previousStatus = current.get(change.orderId);
+                    OrderStatus from = OrderStatus.parse(change.previousStatus);
+                    if (change.previousStatus == null) {
+                        change.outcome = StatusChange.NOT_FOUND;
+                    } else if (from == newStatus) {
+                        change.outcome = StatusChange.UNCHANGED;
+                    } else if (from == null || !from.canMoveTo(newStatus)) {
+                        change.outcome = StatusChange.CONFLICT;
+                    } else {
+                        moving.add(change);
+                    }
+                }
+                if (moving.isEmpty()) return new java.util.ArrayList<>(results.values());
+                // Same row order in every transaction, so two bulk updates cannot deadlock
+                moving.sort(java.util.Comparator.comparingInt(change -> change.orderId));
 
-            
-            if ("CANCELLED".equalsIgnoreCase(newStatus)) {
-                
-                String getItemsSql = "SELECT product_id, quantity FROM order_items WHERE order_id = ?";
-                try (PreparedStatement psItems = conn.prepareStatement(getItemsSql)) {
-                    psItems.setInt(1, orderId);
-                    try (ResultSet rs = psItems.executeQuery()) {
-                        ProductDAO productDAO = new ProductDAO();
-                        while (rs.next()) {
-                            int productId = rs.getInt("product_id");
-                            int quantity = rs.getInt("quantity");
-                            productDAO.restoreStock(conn, productId, quantity);
+                conn.setAutoCommit(false);
+                try {
+                    String sql = (ledger != null
+                            ? "UPDATE orders SET status = ?, stock_pending = stock_pending + 1"
+                            : "UPDATE orders SET status = ?")
+                            + " WHERE order_id = ? AND status = ?";
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        for (StatusChange change : moving) {
+                            ps.setString(1, newStatus.name());
+                            ps.setInt(2, change.orderId);
+                            ps.setString(3, change.previousStatus);
+                            ps.addBatch();
+                        }
+                        int[] counts = ps.executeBatch();
+                        for (int i = 0; i < moving.size(); i++) {
+                            (counts[i] > 0 ? updated : lost).add(moving.get(i).orderId);
+                        }
+                    }
+
+                    if (cancelling && !updated.isEmpty()) {
+                        String itemsSql = "SELECT order_id, product_id, quantity FROM order_items WHERE order_id IN ("
+                                + placeholders(updated.size()) + ")";
+                        try (PreparedStatement ps = conn.prepareStatement(itemsSql)) {
+                            setInts(ps, 1, updated);
+                            try (ResultSet rs = ps.executeQuery()) {
+                                while (rs.next()) {
+                                    int productId = rs.getInt("product_id");
+                                    int quantity = rs.getInt("quantity");
+                                    itemsByOrder.computeIfAbsent(rs.getInt("order_id"), k -> new java.util.HashMap<>())
+                                            .merge(productId, quantity, Integer::sum);
+                                    stockDeltas.merge(productId, quantity, Integer::sum);
+                                }
+                            }
                         }
+                        if (ledger == null) {
+                            productDAO.restoreStock(conn, stockDeltas);
+                            productDAO.stockChanging();
+                            stockChanging = true;
+                        }
+                        String pickupSql = "SELECT order_id, pickup_time FROM orders WHERE order_id IN ("
+                                + placeholders(updated.size()) + ")";
+                        try (PreparedStatement ps = conn.prepareStatement(pickupSql)) {
+                            setInts(ps, 1, updated);
+                            try (ResultSet rs = ps.executeQuery()) {
+                                while (rs.next()) {
+                                    pickups.put(rs.getInt("order_id"), rs.getObject("pickup_time", LocalDateTime.class));
+                                }
+                            }
+                        }
+                    }
+                    conn.commit();
+                    if (stockChanging) {
+                        stockChanging = false;
+                        productDAO.stockChanged(stockDeltas);
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    if (stockChanging) {
+                        productDAO.stockUnchanged();
                     }
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
                 }
-            }
 
-            
-            String sql = "UPDATE orders SET status = ? WHERE order_id = ?";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, newStatus);
-                ps.setInt(2, orderId);
-                int rows = ps.executeUpdate();
-                if (rows == 0) {
-                    throw new SQLException("Order not found: " + orderId);
+                // Lost races are explained from the winner's committed status, outside the transaction
+                if (!lost.isEmpty()) {
+                    java.util.Map<Integer, String> now = readStatuses(conn, lost);
+                    for (Integer id : lost) {
+                        StatusChange change = results.get(id);
+                        change.previousStatus = now.get(id);
+                        change.outcome = newStatus.name().equals(change.previousStatus)
+                                ? StatusChange.UNCHANGED : StatusChange.CONFLICT;
+                    }
                 }
             }
 
-            conn.commit();
-            return true;
+            for (Integer id : updated) {
+                results.get(id).outcome = StatusChange.UPDATED;
+            }
+            if (ledger != null) {
+                for (Integer id : updated) {
+                    ledger.cancelled(id, itemsByOrder.getOrDefault(id, java.util.Map.of()));
+                }
+            }
+            // Pickup seats and the kitchen plan follow only committed cancellations
+            for (java.util.Map.Entry<Integer, LocalDateTime> pickup : pickups.entrySet()) {
+                PickupSlots.getInstance().cancelled(pickup.getValue());
+                KitchenPlan.getInstance().cancelled(pickup.getKey(), pickup.getValue(),
+                        itemsByOrder.getOrDefault(pickup.getKey(), java.util.Map.of()));
+            }
+            return new java.util.ArrayList<>(results.values());
 
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
-            if (conn != null) {
-                try { conn.rollback(); } catch (SQLException ex) { ex.printStackTrace(); }
-            }
-            return false;
-        } finally {
-            if (conn != null) {
-                try { conn.close(); } catch (SQLException e) { e.printStackTrace(); }
+            return null;
+        }
+    }
+
+    private static java.util.Map<Integer, String> readStatuses(Connection conn, java.util.List<Integer> orderIds)
+            throws SQLException {
+        java.util.Map<Integer, String> statuses = new java.util.HashMap<>();
+        String sql = "SELECT order_id, status FROM orders WHERE order_id IN (" + placeholders(orderIds.size()) + ")";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            setInts(ps, 1, orderIds);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    statuses.put(rs.getInt("order_id"), rs.getString("status"));
+                }
             }
         }
+        return statuses;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", java.util.Collections.nCopies(count, "?"));
+    }
+
+    private static void setInts(PreparedStatement ps, int from, java.util.List<Integer> values) throws SQLException {
+        for (Integer value : values) {
+            ps.setInt(from++, value);
+        }
+    }
+
+    public static class StatusChange {
+        public static final String UPDATED = "UPDATED";
+        public static final String UNCHANGED = "UNCHANGED";
+        public static final String NOT_FOUND = "NOT_FOUND";
+        public static final String CONFLICT = "CONFLICT";
+
+        public int orderId;
+        public String previousStatus;
+        public String outcome;
     }
 }
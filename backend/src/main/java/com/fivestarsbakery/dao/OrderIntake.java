@@ -0,0 +1,365 @@
+package com.fivestarsbakery.dao;
+
+import com.fivestarsbakery.cache.IdempotencyStore;
+import com.fivestarsbakery.model.Order;
+import com.fivestarsbakery.util.AppConfig;
+import com.fivestarsbakery.util.DBConnection;
+import com.fivestarsbakery.util.InsufficientStockException;
+import com.fivestarsbakery.util.PickupTimes;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Savepoint;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Opt-in asynchronous checkout (ORDER_ASYNC_ENABLED): orders wait in a bounded queue and a single
+ * writer thread group-commits them, many orders per transaction, so the database pays one commit per batch.
+ * - submit() answers a reused idempotency key from the stored order, otherwise prices the order, takes its
+ *   pickup slot seat and fails fast when ORDER_QUEUE_CAPACITY orders are already waiting
+ * - the writer takes up to ORDER_BATCH_SIZE orders, waiting at most ORDER_BATCH_WAIT_MS for a batch to fill
+ * - each order runs inside its own savepoint, so a stock conflict or reused idempotency key
+ *   rolls back only that order
+ * - futures complete once the batch has committed, i.e. when the order is durable
+ */
+public class OrderIntake {
+
+    public static final boolean ENABLED = AppConfig.getBoolean("ORDER_ASYNC_ENABLED", false);
+    private static final int CAPACITY = AppConfig.getInt("ORDER_QUEUE_CAPACITY", 1000);
+    private static final int MAX_BATCH_SIZE = AppConfig.getInt("ORDER_BATCH_SIZE", 50);
+    private static final long BATCH_WAIT_MS = AppConfig.getLong("ORDER_BATCH_WAIT_MS", 5);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private static volatile OrderIntake instance;
+    private static final ReentrantLock startLock = new ReentrantLock();
+
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final OrderDAO orderDAO = new OrderDAO();
+    private final ProductDAO productDAO = new ProductDAO();
+    private final PickupSlots slots = PickupSlots.getInstance();
+    private final KitchenPlan kitchenPlan = KitchenPlan.getInstance();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedOrders = new LongAdder();
+    private final LongAdder commitMicros = new LongAdder();
+    private final LongAdder latencyMicros = new LongAdder();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong maxCommitMicros = new AtomicLong();
+
+    private OrderIntake() {
+        writer = new Thread(this::run, "order-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * The running intake, or null when ORDER_ASYNC_ENABLED is off.
+     */
+    public static OrderIntake getInstance() {
+        if (!ENABLED) return null;
+        OrderIntake intake = instance;
+        if (intake != null) return intake;
+
+        startLock.lock();
+        try {
+            if (instance == null) {
+                instance = new OrderIntake();
+                System.out.println("📥 Async checkout enabled (queue " + CAPACITY + ", batches of up to "
+                        + MAX_BATCH_SIZE + ")");
+            }
+            return instance;
+        } finally {
+            startLock.unlock();
+        }
+    }
+
+    /**
+     * Stops taking orders and writes out everything already queued. Must run before the pool closes.
+     */
+    public static void shutdown() {
+        OrderIntake intake = instance;
+        if (intake == null) return;
+        intake.running = false;
+        try {
+            intake.writer.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (intake.writer.isAlive()) {
+            System.err.println("⚠️ Order writer still busy at shutdown; " + intake.queue.size() + " order(s) left in the queue");
+        }
+        instance = null;
+    }
+
+    /**
+     * Queues the order, priced from the catalog. The future completes with the stored order
+     * (id and total filled in) once it has committed, or fails with the reason it was not placed:
+     * IllegalArgumentException, SlotFullException, InsufficientStockException, IntakeFullException,
+     * IdempotencyStore.KeyReusedException or a database error.
+     */
+    public CompletableFuture<Order> submit(Order order, String idempotencyKey) {
+        Pending pending = new Pending(order, idempotencyKey);
+        try {
+            // A retry of an order that already committed is not admitted again
+            if (idempotencyKey != null && orderDAO.findExistingOrder(order, idempotencyKey)) {
+                return CompletableFuture.completedFuture(order);
+            }
+            pending.quantities = orderDAO.priceOrder(order, productDAO);
+            if (pending.quantities == null) {
+                throw new SQLException("Product catalog unavailable");
+            }
+            pending.pickup = PickupTimes.parse(order.getPickupDate(), order.getPickupTime());
+            pending.slot = slots.reserve(pending.pickup);
+            pending.ledger = StockLedger.getInstance();
+            if (pending.ledger != null) {
+                pending.ledger.reserve(pending.quantities);
+            }
+        } catch (Exception e) {
+            if (pending.slot != null) {
+                slots.release(pending.slot);
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (!running || !queue.offer(pending)) {
+            if (pending.ledger != null) {
+                pending.ledger.release(pending.quantities);
+            }
+            slots.release(pending.slot);
+            rejected.increment();
+            return CompletableFuture.failedFuture(new IntakeFullException());
+        }
+        submitted.increment();
+        return pending.result;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        boolean interrupted = false;
+        while (!interrupted && (running || !queue.isEmpty())) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+
+                // A batch that is already forming gets a moment to fill; a lone order is written at once
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_WAIT_MS);
+                while (batch.size() < MAX_BATCH_SIZE && batch.size() > 1) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                    queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Whatever was already taken off the queue is still written below
+                interrupted = true;
+                running = false;
+            }
+
+            try {
+                if (!batch.isEmpty()) writeBatch(batch);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                for (Pending pending : batch) {
+                    if (!pending.result.isDone()) fail(pending, e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        long start = System.nanoTime();
+        List<Pending> placed = new ArrayList<>(batch.size());
+        List<Pending> replayed = new ArrayList<>();
+        boolean stockChanging = false;
+
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (Pending pending : batch) {
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        int orderId = orderDAO.insertOrder(conn, pending.order, pending.idempotencyKey, pending.ledger != null);
+                        if (pending.ledger == null) {
+                            productDAO.reserveStock(conn, pending.quantities);
+                        }
+                        pending.order.setOrderId(orderId);
+                        conn.releaseSavepoint(savepoint);
+                        placed.add(pending);
+                    } catch (SQLIntegrityConstraintViolationException e) {
+                        conn.rollback(savepoint);
+                        try {
+                            if (pending.idempotencyKey != null
+                                    && orderDAO.loadExistingOrder(conn, pending.order, pending.idempotencyKey)) {
+                                replayed.add(pending);
+                            } else {
+                                fail(pending, e);
+                            }
+                        } catch (IdempotencyStore.KeyReusedException reused) {
+                            fail(pending, reused);
+                        }
+                    } catch (InsufficientStockException e) {
+                        conn.rollback(savepoint);
+                        fail(pending, e);
+                    }
+                }
+                productDAO.stockChanging();
+                stockChanging = true;
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                if (stockChanging) {
+                    stockChanging = false;
+                    productDAO.stockUnchanged();
+                }
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (Exception e) {
+            if (stockChanging) {
+                productDAO.stockUnchanged();
+            }
+            System.err.println("❌ Order batch of " + batch.size() + " failed: " + e.getMessage());
+            for (Pending pending : batch) {
+                if (!pending.result.isDone()) fail(pending, e);
+            }
+            return;
+        }
+
+        long commitTime = (System.nanoTime() - start) / 1_000;
+        batches.increment();
+        batchedOrders.add(batch.size());
+        commitMicros.add(commitTime);
+        maxCommitMicros.accumulateAndGet(commitTime, Math::max);
+        maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+
+        Map<Integer, Integer> stockDeltas = new HashMap<>();
+        for (Pending pending : placed) {
+            // Ledger orders reach the catalog with the ledger's flush
+            if (pending.ledger != null) {
+                pending.ledger.commit(pending.order.getOrderId(), pending.quantities);
+            } else {
+                pending.quantities.forEach((productId, quantity) -> stockDeltas.merge(productId, -quantity, Integer::sum));
+            }
+            kitchenPlan.placed(pending.order.getOrderId(), pending.pickup, pending.quantities);
+        }
+        productDAO.stockChanged(stockDeltas);
+
+        long now = System.nanoTime();
+        for (Pending pending : placed) {
+            complete(pending, now);
+        }
+        for (Pending pending : replayed) {
+            if (pending.ledger != null) {
+                pending.ledger.release(pending.quantities);
+            }
+            slots.release(pending.slot);
+            complete(pending, now);
+        }
+    }
+
+    private void complete(Pending pending, long now) {
+        committed.increment();
+        latencyMicros.add((now - pending.enqueuedAt) / 1_000);
+        pending.result.complete(pending.order);
+    }
+
+    private void fail(Pending pending, Exception e) {
+        if (pending.ledger != null) {
+            pending.ledger.release(pending.quantities);
+        }
+        slots.release(pending.slot);
+        failed.increment();
+        pending.result.completeExceptionally(e);
+    }
+
+    public static Stats getStats() {
+        Stats stats = new Stats();
+        stats.enabled = ENABLED;
+        stats.capacity = CAPACITY;
+        OrderIntake intake = instance;
+        if (intake == null) return stats;
+        stats.queueDepth = intake.queue.size();
+        stats.submitted = intake.submitted.sum();
+        stats.rejected = intake.rejected.sum();
+        stats.committed = intake.committed.sum();
+        stats.failed = intake.failed.sum();
+        stats.batches = intake.batches.sum();
+        stats.maxBatchSize = intake.maxBatchSize.get();
+        long batchCount = stats.batches;
+        if (batchCount > 0) {
+            stats.avgBatchSize = Math.round(10.0 * intake.batchedOrders.sum() / batchCount) / 10.0;
+            stats.avgCommitMillis = Math.round(intake.commitMicros.sum() / (double) batchCount) / 1000.0;
+        }
+        stats.maxCommitMillis = intake.maxCommitMicros.get() / 1000.0;
+        if (stats.committed > 0) {
+            stats.avgLatencyMillis = Math.round(intake.latencyMicros.sum() / (double) stats.committed) / 1000.0;
+        }
+        return stats;
+    }
+
+
+    public static class Stats {
+        public boolean enabled;
+        public int capacity;
+        public int queueDepth;
+        public long submitted;
+        public long rejected;
+        public long committed;
+        public long failed;
+        public long batches;
+        public double avgBatchSize;
+        public long maxBatchSize;
+        public double avgCommitMillis;
+        public double maxCommitMillis;
+        // From submit() until the order is durable
+        public double avgLatencyMillis;
+    }
+
+    public static class IntakeFullException extends RuntimeException {
+        public IntakeFullException() {
+            super("Too many orders in progress, please try again shortly");
+        }
+    }
+
+    private static class Pending {
+        final Order order;
+        final String idempotencyKey;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Order> result = new CompletableFuture<>();
+        Map<Integer, Integer> quantities;
+        StockLedger ledger;
+        LocalDateTime pickup;
+        PickupSlots.Slot slot;
+
+        Pending(Order order, String idempotencyKey) {
+            this.order = order;
+            this.idempotencyKey = idempotencyKey;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.fivestarsbakery.dao;
+
+import com.fivestarsbakery.util.AppConfig;
+import com.fivestarsbakery.util.DBConnection;
+import com.fivestarsbakery.util.PickupTimes;
+import com.fivestarsbakery.util.SlotFullException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pickup slots: opening hours (PICKUP_OPENING_TIME to PICKUP_CLOSING_TIME) are cut into slots of
+ * PICKUP_SLOT_MINUTES, and each slot takes at most PICKUP_SLOT_CAPACITY orders.
+ * - Occupancy is held in memory, one counter per slot and day, loaded with a single GROUP BY query
+ *   the first time a day is used
+ * - Checkout takes a seat with a CAS before the order is written and gives it back if the order is not stored;
+ *   a cancellation gives it back once it has committed
+ * - Listing a day's slots reads its counters only
+ *
+ * Counters are process-local: capacity is exact while a single instance takes checkouts,
+ * and a restarted instance re-reads each day from the orders table.
+ */
+public class PickupSlots {
+
+    private static final LocalTime OPENING = LocalTime.parse(AppConfig.get("PICKUP_OPENING_TIME", "10:00"));
+    private static final LocalTime CLOSING = LocalTime.parse(AppConfig.get("PICKUP_CLOSING_TIME", "19:00"));
+    private static final int SLOT_MINUTES = AppConfig.getInt("PICKUP_SLOT_MINUTES", 30);
+    private static final int CAPACITY = AppConfig.getInt("PICKUP_SLOT_CAPACITY", 10);
+    private static final int MAX_DAYS_AHEAD = AppConfig.getInt("PICKUP_MAX_DAYS_AHEAD", 30);
+    private static final int MAX_ALTERNATIVES = 3;
+
+    private static final PickupSlots INSTANCE = new PickupSlots();
+
+    private final int slotCount = (int) (ChronoUnit.MINUTES.between(OPENING, CLOSING) / SLOT_MINUTES);
+
+    // Booked seats per slot, by pickup date; days before today are dropped whenever a new day is loaded
+    private final ConcurrentHashMap<LocalDate, AtomicIntegerArray> days = new ConcurrentHashMap<>();
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    private final LongAdder reserved = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder dayLoads = new LongAdder();
+
+    private PickupSlots() {
+    }
+
+    public static PickupSlots getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Takes a seat in the slot the pickup time falls in, or throws without taking anything:
+     * - IllegalArgumentException if the time is missing, outside opening hours, already started
+     *   or more than PICKUP_MAX_DAYS_AHEAD days away
+     * - SlotFullException, naming the nearest slots that day with room, if the slot is full
+     * The returned Slot must be released if the order is not stored.
+     */
+    public Slot reserve(LocalDateTime pickup) throws SQLException {
+        Slot slot = slotOf(pickup);
+        AtomicIntegerArray booked = day(slot.date);
+        while (true) {
+            int seats = booked.get(slot.index);
+            if (seats >= CAPACITY) {
+                rejected.increment();
+                throw new SlotFullException(PickupTimes.DATE.format(slot.date), PickupTimes.TIME.format(startOf(slot.index)),
+                        alternatives(slot.date, booked, slot.index));
+            }
+            if (booked.compareAndSet(slot.index, seats, seats + 1)) break;
+        }
+        reserved.increment();
+        return slot;
+    }
+
+    /**
+     * Gives back a seat taken by reserve() for an order that was not stored.
+     */
+    public void release(Slot slot) {
+        AtomicIntegerArray booked = days.get(slot.date);
+        if (booked != null) {
+            booked.updateAndGet(slot.index, seats -> Math.max(seats - 1, 0));
+        }
+        released.increment();
+    }
+
+    /**
+     * A stored order with this pickup time has been cancelled and committed.
+     * Days that are not loaded are skipped: their first load counts from the orders table.
+     * A cancellation that commits while its day is loading may keep its seat until the next restart,
+     * which only ever errs towards turning an order away.
+     */
+    public void cancelled(LocalDateTime pickup) {
+        if (pickup == null) return;
+        int index = indexOf(pickup.toLocalTime());
+        if (index < 0) return;
+        AtomicIntegerArray booked = days.get(pickup.toLocalDate());
+        if (booked != null) {
+            booked.updateAndGet(index, seats -> Math.max(seats - 1, 0));
+            released.increment();
+        }
+    }
+
+    /**
+     * The slots of a day that have not started yet, with the seats left in each (0 when full).
+     * Throws IllegalArgumentException for days before today or beyond PICKUP_MAX_DAYS_AHEAD.
+     */
+    public List<Availability> available(LocalDate date) throws SQLException {
+        checkBookable(date);
+        AtomicIntegerArray booked = day(date);
+        LocalDateTime now = PickupTimes.now();
+        List<Availability> slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            LocalTime start = startOf(i);
+            if (!date.atTime(start).isAfter(now)) continue;
+            Availability slot = new Availability();
+            slot.time = PickupTimes.TIME.format(start);
+            slot.available = Math.max(CAPACITY - booked.get(i), 0);
+            slots.add(slot);
+        }
+        return slots;
+    }
+
+    private Slot slotOf(LocalDateTime pickup) {
+        if (pickup == null) {
+            throw new IllegalArgumentException("Please choose a pickup date and time");
+        }
+        int index = indexOf(pickup.toLocalTime());
+        if (index < 0) {
+            throw new IllegalArgumentException("Pickup is only available from " + PickupTimes.TIME.format(OPENING)
+                    + " to " + PickupTimes.TIME.format(CLOSING));
+        }
+        LocalDate date = pickup.toLocalDate();
+        checkBookable(date);
+        if (!date.atTime(startOf(index)).isAfter(PickupTimes.now())) {
+            throw new IllegalArgumentException("That pickup slot has already started, please choose a later one");
+        }
+        return new Slot(date, index);
+    }
+
+    private static void checkBookable(LocalDate date) {
+        LocalDate today = PickupTimes.now().toLocalDate();
+        if (date.isBefore(today)) {
+            throw new IllegalArgumentException("Pickup date has already passed");
+        }
+        if (date.isAfter(today.plusDays(MAX_DAYS_AHEAD))) {
+            throw new IllegalArgumentException("Pickup can be booked at most " + MAX_DAYS_AHEAD + " days ahead");
+        }
+    }
+
+    // -1 outside opening hours
+    private int indexOf(LocalTime time) {
+        if (time.isBefore(OPENING)) return -1;
+        int index = (int) (ChronoUnit.MINUTES.between(OPENING, time) / SLOT_MINUTES);
+        return index < slotCount ? index : -1;
+    }
+
+    private static LocalTime startOf(int index) {
+        return OPENING.plusMinutes((long) index * SLOT_MINUTES);
+    }
+
+    // Nearest first, earlier before later at equal distance; slots that have started are never offered
+    private List<String> alternatives(LocalDate date, AtomicIntegerArray booked, int full) {
+        LocalDateTime now = PickupTimes.now();
+        List<String> times = new ArrayList<>(MAX_ALTERNATIVES);
+        for (int distance = 1; distance < slotCount && times.size() < MAX_ALTERNATIVES; distance++) {
+            for (int index : new int[] { full - distance, full + distance }) {
+                if (index < 0 || index >= slotCount || times.size() == MAX_ALTERNATIVES) continue;
+                LocalTime start = startOf(index);
+                if (booked.get(index) < CAPACITY && date.atTime(start).isAfter(now)) {
+                    times.add(PickupTimes.TIME.format(start));
+                }
+            }
+        }
+        return times;
+    }
+
+    private AtomicIntegerArray day(LocalDate date) throws SQLException {
+        AtomicIntegerArray booked = days.get(date);
+        if (booked != null) return booked;
+
+        // Loads are rare (once per day), so one lock for all of them is enough
+        loadLock.lock();
+        try {
+            booked = days.get(date);
+            if (booked == null) {
+                booked = load(date);
+                LocalDate today = PickupTimes.now().toLocalDate();
+                days.keySet().removeIf(loaded -> loaded.isBefore(today));
+                days.put(date, booked);
+                dayLoads.increment();
+            }
+            return booked;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private AtomicIntegerArray load(LocalDate date) throws SQLException {
+        OrderDAO.ensureMigrated();
+        AtomicIntegerArray booked = new AtomicIntegerArray(slotCount);
+        String sql = "SELECT pickup_time, COUNT(*) AS orders FROM orders"
+                + " WHERE pickup_time >= ? AND pickup_time < ? AND status <> 'CANCELLED' GROUP BY pickup_time";
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, date.atTime(OPENING));
+            ps.setObject(2, date.atTime(CLOSING));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int index = indexOf(rs.getObject("pickup_time", LocalDateTime.class).toLocalTime());
+                    if (index >= 0) booked.addAndGet(index, rs.getInt("orders"));
+                }
+            }
+        }
+        return booked;
+    }
+
+    public static Stats getStats() {
+        PickupSlots slots = INSTANCE;
+        Stats stats = new Stats();
+        stats.slotMinutes = SLOT_MINUTES;
+        stats.slotsPerDay = slots.slotCount;
+        stats.capacity = CAPACITY;
+        stats.daysLoaded = slots.days.size();
+        stats.dayLoads = slots.dayLoads.sum();
+        stats.reserved = slots.reserved.sum();
+        stats.rejected = slots.rejected.sum();
+        stats.released = slots.released.sum();
+        return stats;
+    }
+
+    public static int getSlotMinutes() {
+        return SLOT_MINUTES;
+    }
+
+    public static int getCapacity() {
+        return CAPACITY;
+    }
+
+    public static class Slot {
+        final LocalDate date;
+        final int index;
+
+        Slot(LocalDate date, int index) {
+            this.date = date;
+            this.index = index;
+        }
+    }
+
+    public static class Availability {
+        public String time;
+        public int available;
+    }
+
+    public static class Stats {
+        public int slotMinutes;
+        public int slotsPerDay;
+        public int capacity;
+        public int daysLoaded;
+        public long dayLoads;
+        public long reserved;
+        // Checkouts turned away because their slot was full
+        public long rejected;
+        public long released;
+    }
+}
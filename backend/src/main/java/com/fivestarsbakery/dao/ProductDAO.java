@@ -1,77 +1,82 @@
 package com.fivestarsbakery.dao;
 
+import com.fivestarsbakery.cache.ProductCatalog;
 import com.fivestarsbakery.model.Product;
 import com.fivestarsbakery.util.DBConnection;
+import com.fivestarsbakery.util.DatabaseUnavailableException;
+import com.fivestarsbakery.util.InsufficientStockException;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 public class ProductDAO {
 
+    private final ProductCatalog catalog = ProductCatalog.getInstance();
+
+    // Served from the in-memory catalog; the database is only read when the snapshot is missing or expired
     public List<Product> getAllProducts() {
+        ProductCatalog.Snapshot snapshot = getCatalogSnapshot();
+        return snapshot != null ? snapshot.getProducts() : Collections.emptyList();
+    }
+
+    public Product getProductById(int id) {
+        ProductCatalog.Snapshot snapshot = getCatalogSnapshot();
+        return snapshot != null ? snapshot.getById(id) : null;
+    }
+
+    public ProductCatalog.Snapshot getCatalogSnapshot() {
+        try {
+            return catalog.getOrLoad(this::loadAllProducts);
+        } catch (DatabaseUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private List<Product> loadAllProducts() throws SQLException {
         List<Product> products = new ArrayList<>();
         String sql = "SELECT * FROM products";
 
-        
         try (Connection conn = DBConnection.getConnection();
                 PreparedStatement stmt = conn.prepareStatement(sql);
                 ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
-                
-                Product p = new Product(
-                        rs.getInt("product_id"),
-                        rs.getString("name"),
-                        rs.getString("description"),
-                        rs.getString("ingredients"),
-                        rs.getDouble("price"),
-                        rs.getInt("stock_quantity"),
-                        rs.getString("category"),
-                        rs.getString("image_url"));
-                products.add(p);
+                products.add(mapProduct(rs));
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
         return products;
     }
 
-    public Product getProductById(int id) {
-        Product product = null;
-        String sql = "SELECT * FROM products WHERE product_id = ?";
-
-        try (Connection conn = DBConnection.getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setInt(1, id);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    product = new Product(
-                            rs.getInt("product_id"),
-                            rs.getString("name"),
-                            rs.getString("description"),
-                            rs.getString("ingredients"),
-                            rs.getDouble("price"),
-                            rs.getInt("stock_quantity"),
-                            rs.getString("category"),
-                            rs.getString("image_url"));
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return product;
+    static Product mapProduct(ResultSet rs) throws SQLException {
+        return new Product(
+                rs.getInt("product_id"),
+                rs.getString("name"),
+                rs.getString("description"),
+                rs.getString("ingredients"),
+                rs.getDouble("price"),
+                rs.getInt("stock_quantity"),
+                rs.getString("category"),
+                rs.getString("image_url"));
     }
 
     
     public boolean addProduct(Product product) {
         String sql = "INSERT INTO products (name, description, ingredients, price, stock_quantity, category, image_url) VALUES (?, ?, ?, ?, ?, ?, ?)";
         try (Connection conn = DBConnection.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
+                PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, product.getName());
             ps.setString(2, product.getDescription());
             ps.setString(3, product.getIngredients());
@@ -79,7 +84,20 @@ public class ProductDAO {
             ps.setInt(5, product.getStock());
             ps.setString(6, product.getCategory());
             ps.setString(7, product.getImageUrl());
-            return ps.executeUpdate() > 0;
+            if (ps.executeUpdate() == 0) return false;
+
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) {
+                    catalog.upsert(new Product(keys.getInt(1), product.getName(), product.getDescription(),
+                            product.getIngredients(), product.getPrice(), product.getStock(),
+                            product.getCategory(), product.getImageUrl()));
+                } else {
+                    catalog.invalidate();
+                }
+            }
+            return true;
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -89,8 +107,32 @@ public class ProductDAO {
     
     public boolean updateProduct(Product product) {
         String sql = "UPDATE products SET name=?, description=?, ingredients=?, price=?, stock_quantity=?, category=?, image_url=? WHERE product_id=?";
-        try (Connection conn = DBConnection.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)) {
+        try {
+            // The new stock level is absolute, so the ledger keeps checkouts out until it has caught up.
+            // The catalog is updated inside, before a later flush can patch it
+            StockLedger ledger = StockLedger.getInstance();
+            if (ledger != null) {
+                return ledger.setStock(product.getId(), product.getStock(), conn -> {
+                    if (!writeProduct(conn, sql, product)) return false;
+                    catalog.upsert(product);
+                    return true;
+                });
+            }
+            try (Connection conn = DBConnection.getConnection()) {
+                if (!writeProduct(conn, sql, product)) return false;
+            }
+            catalog.upsert(product);
+            return true;
+        } catch (DatabaseUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private boolean writeProduct(Connection conn, String sql, Product product) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, product.getName());
             ps.setString(2, product.getDescription());
             ps.setString(3, product.getIngredients());
@@ -100,9 +142,6 @@ public class ProductDAO {
             ps.setString(7, product.getImageUrl());
             ps.setInt(8, product.getId());
             return ps.executeUpdate() > 0;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
         }
     }
 
@@ -112,7 +151,15 @@ public class ProductDAO {
         try (Connection conn = DBConnection.getConnection();
                 PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
+            if (ps.executeUpdate() == 0) return false;
+            StockLedger ledger = StockLedger.getInstance();
+            if (ledger != null) {
+                ledger.forget(id);
+            }
+            catalog.remove(id);
+            return true;
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -120,30 +167,110 @@ public class ProductDAO {
     }
 
     
-    public boolean deductStock(Connection conn, int productId, int quantity) throws Exception {
-        String sql = "UPDATE products SET stock_quantity = stock_quantity - ? WHERE product_id = ? AND stock_quantity >= ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, quantity);
-            ps.setInt(2, productId);
-            ps.setInt(3, quantity); 
-            int rows = ps.executeUpdate();
-            if (rows == 0) {
-                throw new Exception("Insufficient stock for product ID: " + productId);
+    /**
+     * Deducts stock for every line of an order (productId -> quantity) inside the caller's transaction,
+     * in two round trips however large the cart is:
+     * - lock all rows with one SELECT ... FOR UPDATE in product_id order, so concurrent checkouts
+     *   always take locks in the same order and cannot deadlock on each other
+     * - check every line, then apply all deductions with a single CASE update
+     */
+    public void reserveStock(Connection conn, Map<Integer, Integer> quantities) throws SQLException {
+        if (quantities.isEmpty()) return;
+        SortedMap<Integer, Integer> lines = new TreeMap<>(quantities);
+        String placeholders = String.join(",", Collections.nCopies(lines.size(), "?"));
+
+        Map<Integer, Integer> available = new HashMap<>();
+        String lockSql = "SELECT product_id, stock_quantity FROM products WHERE product_id IN (" + placeholders + ") "
+                + "ORDER BY product_id FOR UPDATE";
+        try (PreparedStatement ps = conn.prepareStatement(lockSql)) {
+            int i = 1;
+            for (Integer productId : lines.keySet()) {
+                ps.setInt(i++, productId);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    available.put(rs.getInt("product_id"), rs.getInt("stock_quantity"));
+                }
+            }
+        }
+        for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+            int stock = available.getOrDefault(line.getKey(), 0);
+            if (stock < line.getValue()) {
+                throw new InsufficientStockException(line.getKey(), line.getValue(), stock);
+            }
+        }
+
+        StringBuilder sql = new StringBuilder("UPDATE products SET stock_quantity = stock_quantity - CASE product_id");
+        for (int i = 0; i < lines.size(); i++) {
+            sql.append(" WHEN ? THEN ?");
+        }
+        sql.append(" END WHERE product_id IN (").append(placeholders).append(")");
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+                ps.setInt(i++, line.getKey());
+                ps.setInt(i++, line.getValue());
+            }
+            for (Integer productId : lines.keySet()) {
+                ps.setInt(i++, productId);
+            }
+            if (ps.executeUpdate() != lines.size()) {
+                throw new SQLException("Stock update touched fewer rows than were locked");
             }
-            return true;
         }
     }
 
     
-    public boolean restoreStock(Connection conn, int productId, int quantity) throws Exception {
-        String sql = "UPDATE products SET stock_quantity = stock_quantity + ? WHERE product_id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, quantity);
-            ps.setInt(2, productId);
-            return ps.executeUpdate() > 0;
+    /**
+     * Puts stock back (productId -> quantity) inside the caller's transaction with a single CASE update,
+     * one row per product however many orders the quantities were summed from.
+     */
+    public void restoreStock(Connection conn, Map<Integer, Integer> quantities) throws SQLException {
+        if (quantities.isEmpty()) return;
+        SortedMap<Integer, Integer> lines = new TreeMap<>(quantities);
+        StringBuilder sql = new StringBuilder("UPDATE products SET stock_quantity = stock_quantity + CASE product_id");
+        for (int i = 0; i < lines.size(); i++) {
+            sql.append(" WHEN ? THEN ?");
+        }
+        sql.append(" END WHERE product_id IN (")
+                .append(String.join(",", Collections.nCopies(lines.size(), "?"))).append(")");
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+                ps.setInt(i++, line.getKey());
+                ps.setInt(i++, line.getValue());
+            }
+            for (Integer productId : lines.keySet()) {
+                ps.setInt(i++, productId);
+            }
+            ps.executeUpdate();
         }
     }
-    
+
+    /**
+     * Call right before committing a transaction that ran reserveStock/restoreStock, so a catalog reload
+     * cannot read the table while the change is committed but not yet patched in.
+     * Must be followed by exactly one stockChanged() or stockUnchanged().
+     */
+    public void stockChanging() {
+        catalog.stockChanging();
+    }
+
+    /**
+     * Call after that transaction has committed.
+     * Patches stock levels in the cached catalog (productId -> signed delta) instead of reloading it.
+     */
+    public void stockChanged(Map<Integer, Integer> deltas) {
+        catalog.applyStockDeltas(deltas);
+    }
+
+    /**
+     * Call instead of stockChanged() when the transaction did not commit.
+     */
+    public void stockUnchanged() {
+        catalog.stockUnchanged();
+    }
+
     public boolean isCategoryUsed(String category) {
         String sql = "SELECT 1 FROM products WHERE category = ? LIMIT 1";
         try (Connection conn = DBConnection.getConnection();
@@ -152,6 +279,8 @@ public class ProductDAO {
             try (ResultSet rs = ps.executeQuery()) {
                 return rs.next(); 
             }
+        } catch (DatabaseUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             return true; 
@@ -0,0 +1,326 @@
+package com.fivestarsbakery.dao;
+
+import com.fivestarsbakery.util.AppConfig;
+import com.fivestarsbakery.util.DBConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Opt-in buffered reviews (REVIEW_ASYNC_ENABLED): reviews wait in a bounded queue and a single writer
+ * thread stores them with FeedbackDAO.addFeedbackBatch, many per transaction.
+ * - submit() turns a review away at once if its (user_id, order_id, product_id) is already stored or queued,
+ *   checked against an in-memory copy of the unique key, or when REVIEW_QUEUE_CAPACITY reviews are waiting
+ * - the writer flushes when REVIEW_BATCH_SIZE reviews are queued or REVIEW_BATCH_WAIT_MS after the first one,
+ *   whichever comes first
+ * - futures complete once the batch has committed, i.e. when the review is durable
+ *
+ * The key copy is process-local; with several instances the unique key in the database still
+ * keeps a second review out, it is just found at flush time instead of at submit().
+ */
+public class ReviewIntake {
+
+    public static final boolean ENABLED = AppConfig.getBoolean("REVIEW_ASYNC_ENABLED", false);
+    private static final int CAPACITY = AppConfig.getInt("REVIEW_QUEUE_CAPACITY", 1000);
+    private static final int MAX_BATCH_SIZE = AppConfig.getInt("REVIEW_BATCH_SIZE", 100);
+    private static final long BATCH_WAIT_MS = AppConfig.getLong("REVIEW_BATCH_WAIT_MS", 20);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private static volatile ReviewIntake instance;
+    private static final ReentrantLock startLock = new ReentrantLock();
+
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final FeedbackDAO feedbackDAO = new FeedbackDAO();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // "userId:orderId:productId" of every review stored or queued; loaded once from the feedback table
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock keysLock = new ReentrantLock();
+    private volatile boolean keysLoaded;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedReviews = new LongAdder();
+    private final LongAdder commitMicros = new LongAdder();
+    private final LongAdder latencyMicros = new LongAdder();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong maxCommitMicros = new AtomicLong();
+    private final long startedAt = System.nanoTime();
+
+    private ReviewIntake() {
+        writer = new Thread(this::run, "review-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * The running intake, or null when REVIEW_ASYNC_ENABLED is off.
+     */
+    public static ReviewIntake getInstance() {
+        if (!ENABLED) return null;
+        ReviewIntake intake = instance;
+        if (intake != null) return intake;
+
+        startLock.lock();
+        try {
+            if (instance == null) {
+                instance = new ReviewIntake();
+                System.out.println("📥 Buffered reviews enabled (queue " + CAPACITY + ", batches of up to "
+                        + MAX_BATCH_SIZE + " or every " + BATCH_WAIT_MS + " ms)");
+            }
+            return instance;
+        } finally {
+            startLock.unlock();
+        }
+    }
+
+    /**
+     * Stops taking reviews and writes out everything already queued. Must run before the pool closes.
+     */
+    public static void shutdown() {
+        ReviewIntake intake = instance;
+        if (intake == null) return;
+        intake.running = false;
+        try {
+            intake.writer.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (intake.writer.isAlive()) {
+            System.err.println("⚠️ Review writer still busy at shutdown; " + intake.queue.size() + " review(s) left in the queue");
+        }
+        instance = null;
+    }
+
+    /**
+     * Queues the review. The future completes once it has committed, or fails with the reason it was not stored:
+     * IllegalArgumentException, DuplicateReviewException, IntakeFullException or a database error.
+     */
+    public CompletableFuture<Void> submit(FeedbackDAO.NewReview review) {
+        if (review.rating < 1 || review.rating > 5) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Rating must be between 1 and 5"));
+        }
+        try {
+            loadKeys();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        Pending pending = new Pending(review);
+        if (!keys.add(pending.key)) {
+            duplicates.increment();
+            return CompletableFuture.failedFuture(new DuplicateReviewException());
+        }
+        if (!running || !queue.offer(pending)) {
+            keys.remove(pending.key);
+            rejected.increment();
+            return CompletableFuture.failedFuture(new IntakeFullException());
+        }
+        submitted.increment();
+        return pending.result;
+    }
+
+    private void loadKeys() throws SQLException {
+        if (keysLoaded) return;
+        keysLock.lock();
+        try {
+            if (keysLoaded) return;
+            OrderDAO.ensureMigrated();
+            String sql = "SELECT user_id, order_id, product_id FROM feedback";
+            try (Connection conn = DBConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                DBConnection.streamResults(stmt, 1000);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        keys.add(key(rs.getInt("user_id"), rs.getInt("order_id"), rs.getInt("product_id")));
+                    }
+                }
+            }
+            keysLoaded = true;
+        } finally {
+            keysLock.unlock();
+        }
+    }
+
+    private static String key(int userId, int orderId, int productId) {
+        return userId + ":" + orderId + ":" + productId;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        boolean interrupted = false;
+        while (!interrupted && (running || !queue.isEmpty())) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+
+                // Reviews can wait a moment, so every batch gets the full window to fill (none once shutting down)
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_WAIT_MS);
+                while (batch.size() < MAX_BATCH_SIZE && running) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                    queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Whatever was already taken off the queue is still written below
+                interrupted = true;
+                running = false;
+            }
+
+            try {
+                if (!batch.isEmpty()) writeBatch(batch);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                for (Pending pending : batch) {
+                    if (!pending.result.isDone()) fail(pending, e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        long start = System.nanoTime();
+        List<FeedbackDAO.NewReview> reviews = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            reviews.add(pending.review);
+        }
+
+        SQLException[] errors;
+        try {
+            errors = feedbackDAO.addFeedbackBatch(reviews);
+        } catch (Exception e) {
+            System.err.println("❌ Review batch of " + batch.size() + " failed: " + e.getMessage());
+            for (Pending pending : batch) {
+                fail(pending, e);
+            }
+            return;
+        }
+
+        long now = System.nanoTime();
+        long commitTime = (now - start) / 1_000;
+        batches.increment();
+        batchedReviews.add(batch.size());
+        commitMicros.add(commitTime);
+        maxCommitMicros.accumulateAndGet(commitTime, Math::max);
+        maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            if (errors[i] != null) {
+                fail(pending, errors[i]);
+                continue;
+            }
+            stored.increment();
+            latencyMicros.add((now - pending.enqueuedAt) / 1_000);
+            pending.result.complete(null);
+        }
+    }
+
+    // The key is freed, so a corrected review can be sent again; a real duplicate is caught by the database
+    private void fail(Pending pending, Exception e) {
+        keys.remove(pending.key);
+        failed.increment();
+        pending.result.completeExceptionally(e);
+    }
+
+    public static Stats getStats() {
+        Stats stats = new Stats();
+        stats.enabled = ENABLED;
+        stats.capacity = CAPACITY;
+        ReviewIntake intake = instance;
+        if (intake == null) return stats;
+        stats.queueDepth = intake.queue.size();
+        stats.knownKeys = intake.keys.size();
+        stats.submitted = intake.submitted.sum();
+        stats.duplicates = intake.duplicates.sum();
+        stats.rejected = intake.rejected.sum();
+        stats.stored = intake.stored.sum();
+        stats.failed = intake.failed.sum();
+        stats.batches = intake.batches.sum();
+        stats.maxBatchSize = intake.maxBatchSize.get();
+        long batchCount = stats.batches;
+        if (batchCount > 0) {
+            stats.avgBatchSize = Math.round(10.0 * intake.batchedReviews.sum() / batchCount) / 10.0;
+            stats.avgCommitMillis = Math.round(intake.commitMicros.sum() / (double) batchCount) / 1000.0;
+        }
+        stats.maxCommitMillis = intake.maxCommitMicros.get() / 1000.0;
+        if (stats.stored > 0) {
+            stats.avgLatencyMillis = Math.round(intake.latencyMicros.sum() / (double) stats.stored) / 1000.0;
+        }
+        double seconds = (System.nanoTime() - intake.startedAt) / 1e9;
+        stats.storedPerSecond = Math.round(10.0 * stats.stored / seconds) / 10.0;
+        return stats;
+    }
+
+
+    public static class Stats {
+        public boolean enabled;
+        public int capacity;
+        public int queueDepth;
+        public int knownKeys;
+        public long submitted;
+        // Turned away by the in-memory unique key check
+        public long duplicates;
+        public long rejected;
+        public long stored;
+        public long failed;
+        public long batches;
+        public double avgBatchSize;
+        public long maxBatchSize;
+        public double avgCommitMillis;
+        public double maxCommitMillis;
+        // From submit() until the review is durable
+        public double avgLatencyMillis;
+        // Since the intake started
+        public double storedPerSecond;
+    }
+
+    public static class DuplicateReviewException extends RuntimeException {
+        public DuplicateReviewException() {
+            super("You have already reviewed this product for this order");
+        }
+    }
+
+    public static class IntakeFullException extends RuntimeException {
+        public IntakeFullException() {
+            super("Too many reviews in progress, please try again shortly");
+        }
+    }
+
+    private static class Pending {
+        final FeedbackDAO.NewReview review;
+        final String key;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        Pending(FeedbackDAO.NewReview review) {
+            this.review = review;
+            this.key = key(review.userId, review.orderId, review.productId);
+        }
+    }
+}
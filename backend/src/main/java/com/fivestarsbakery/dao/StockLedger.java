@@ -0,0 +1,488 @@
+package com.fivestarsbakery.dao;
+
+import com.fivestarsbakery.cache.ProductCatalog;
+import com.fivestarsbakery.util.AppConfig;
+import com.fivestarsbakery.util.DBConnection;
+import com.fivestarsbakery.util.InsufficientStockException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional in-memory stock check for flash sales (STOCK_LEDGER_ENABLED), used instead of locking product rows.
+ * - Every product has an atomic counter; a checkout is admitted or rejected with a CAS, with no database work
+ * - Committed orders and cancellations are collected as net per-product deltas and written to
+ *   products.stock_quantity every STOCK_LEDGER_FLUSH_MS, in one transaction
+ * - The cached catalog is patched by the flush, once the products table holds the change, so a catalog reload
+ *   never reads the table between a patch and the write it stands for
+ * - orders.stock_pending holds each order's stock change that the products table does not reflect yet
+ *   (-1 placed, +1 cancelled). It is written in the order's own transaction and taken back by the flush
+ *   that applies it, so reconcile() can redo whatever a crash lost
+ *
+ * Counters are process-local: only enable this when a single instance takes checkouts.
+ */
+public class StockLedger {
+
+    static final boolean ENABLED = AppConfig.getBoolean("STOCK_LEDGER_ENABLED", false);
+    private static final long FLUSH_PERIOD_MS = AppConfig.getLong("STOCK_LEDGER_FLUSH_MS", 1000);
+    private static final int MAX_IDS_PER_STATEMENT = 500;
+
+    private static volatile StockLedger instance;
+    private static final ReentrantLock startLock = new ReentrantLock();
+
+    // Per product: available stock in the high 32 bits, admitted but not yet committed quantity in the low 32
+    private final ConcurrentHashMap<Integer, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    // Writers record into the current batch under the read lock; flush swaps it out under the write lock
+    private final ReentrantReadWriteLock batchLock = new ReentrantReadWriteLock();
+    private Batch batch = new Batch();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder flushedOrders = new LongAdder();
+
+    private StockLedger() {
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stock-ledger-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (Exception e) {
+                System.err.println("❌ Stock ledger flush failed, will retry: " + e.getMessage());
+            }
+        }, FLUSH_PERIOD_MS, FLUSH_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The running ledger, or null when STOCK_LEDGER_ENABLED is off.
+     * The first call reconciles leftovers from a previous run before admitting anything.
+     */
+    public static StockLedger getInstance() throws SQLException {
+        if (!ENABLED) return null;
+        StockLedger ledger = instance;
+        if (ledger != null) return ledger;
+
+        startLock.lock();
+        try {
+            if (instance == null) {
+                reconcile();
+                instance = new StockLedger();
+                System.out.println("📒 Stock ledger enabled (flush every " + FLUSH_PERIOD_MS
+                        + " ms); run a single instance while it is on");
+            }
+            return instance;
+        } finally {
+            startLock.unlock();
+        }
+    }
+
+    /**
+     * Called once the database is reachable at startup. Settles stock left pending by a crash,
+     * even when the ledger has since been switched off.
+     */
+    public static void startup() throws SQLException {
+        if (ENABLED) {
+            getInstance();
+        } else {
+            reconcile();
+        }
+    }
+
+    /**
+     * Stops the flusher and writes out everything still pending. Must run before the pool closes.
+     */
+    public static void shutdown() {
+        StockLedger ledger = instance;
+        if (ledger == null) return;
+        ledger.flusher.shutdownNow();
+        try {
+            ledger.flush();
+        } catch (Exception e) {
+            System.err.println("❌ Final stock ledger flush failed; the next startup will reconcile: " + e.getMessage());
+        }
+        instance = null;
+    }
+
+    /**
+     * Admits a whole cart (productId -> quantity) or nothing.
+     * Products are taken in id order and partial admissions are returned before throwing.
+     */
+    public void reserve(Map<Integer, Integer> quantities) throws SQLException {
+        SortedMap<Integer, Integer> lines = new TreeMap<>(quantities);
+        List<Map.Entry<Integer, Integer>> taken = new ArrayList<>(lines.size());
+        for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+            int available = tryTake(counter(line.getKey()), line.getValue());
+            if (available >= 0) {
+                for (Map.Entry<Integer, Integer> done : taken) {
+                    adjust(counters.get(done.getKey()), done.getValue(), -done.getValue());
+                }
+                rejected.increment();
+                throw new InsufficientStockException(line.getKey(), line.getValue(), available);
+            }
+            taken.add(line);
+        }
+        admitted.increment();
+    }
+
+    /**
+     * The order holding a reservation has committed with stock_pending = -1.
+     */
+    public void commit(int orderId, Map<Integer, Integer> quantities) {
+        batchLock.readLock().lock();
+        try {
+            for (Map.Entry<Integer, Integer> line : quantities.entrySet()) {
+                adjust(counters.get(line.getKey()), 0, -line.getValue());
+                batch.deltas.merge(line.getKey(), -line.getValue(), Integer::sum);
+            }
+            batch.orders.merge(orderId, -1, Integer::sum);
+        } finally {
+            batchLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The order holding a reservation was never committed; give the stock back.
+     */
+    public void release(Map<Integer, Integer> quantities) {
+        for (Map.Entry<Integer, Integer> line : quantities.entrySet()) {
+            adjust(counters.get(line.getKey()), line.getValue(), -line.getValue());
+        }
+    }
+
+    /**
+     * A cancellation has committed with stock_pending incremented; the stock is available again.
+     */
+    public void cancelled(int orderId, Map<Integer, Integer> quantities) throws SQLException {
+        for (Integer productId : quantities.keySet()) {
+            counter(productId);
+        }
+        batchLock.readLock().lock();
+        try {
+            for (Map.Entry<Integer, Integer> line : quantities.entrySet()) {
+                adjust(counters.get(line.getKey()), line.getValue(), 0);
+                batch.deltas.merge(line.getKey(), line.getValue(), Integer::sum);
+            }
+            batch.orders.merge(orderId, 1, Integer::sum);
+        } finally {
+            batchLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the pending batch to the database. A failed batch is merged back and retried next time.
+     */
+    public void flush() throws SQLException {
+        flushLock.lock();
+        try {
+            Batch flushing;
+            batchLock.writeLock().lock();
+            try {
+                flushing = batch;
+                batch = new Batch();
+            } finally {
+                batchLock.writeLock().unlock();
+            }
+            if (flushing.orders.isEmpty() && flushing.deltas.isEmpty()) return;
+
+            ProductCatalog catalog = ProductCatalog.getInstance();
+            catalog.stockChanging();
+            try {
+                write(flushing);
+                flushes.increment();
+                flushedOrders.add(flushing.orders.size());
+                catalog.applyStockDeltas(flushing.deltas);
+            } catch (SQLException | RuntimeException e) {
+                catalog.stockUnchanged();
+                flushFailures.increment();
+                batchLock.readLock().lock();
+                try {
+                    flushing.deltas.forEach((id, delta) -> batch.deltas.merge(id, delta, Integer::sum));
+                    flushing.orders.forEach((id, pending) -> batch.orders.merge(id, pending, Integer::sum));
+                } finally {
+                    batchLock.readLock().unlock();
+                }
+                throw e;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Runs a write that sets the product's stock to an absolute value, with commits and cancellations
+     * held off from the first step to the last:
+     * - everything recorded so far is flushed, so no earlier delta lands on top of the new value
+     * - the write runs; it returns false if there was nothing to update
+     * - the counter follows the new stock, less whatever is admitted but not yet committed
+     * An order that commits afterwards is recorded as a delta against the new value, as usual.
+     * The connection is taken before the locks: checkouts waiting on them may hold the rest of the pool.
+     */
+    public boolean setStock(int productId, int stock, StockWrite write) throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            flushLock.lock();
+            batchLock.writeLock().lock();
+            try {
+                if (!batch.orders.isEmpty() || !batch.deltas.isEmpty()) {
+                    ProductCatalog catalog = ProductCatalog.getInstance();
+                    catalog.stockChanging();
+                    try {
+                        write(conn, batch);
+                    } catch (SQLException | RuntimeException e) {
+                        catalog.stockUnchanged();
+                        flushFailures.increment();
+                        throw e;
+                    }
+                    flushes.increment();
+                    flushedOrders.add(batch.orders.size());
+                    catalog.applyStockDeltas(batch.deltas);
+                    batch = new Batch();
+                }
+                if (!write.run(conn)) return false;
+                resync(productId, stock);
+                return true;
+            } finally {
+                batchLock.writeLock().unlock();
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private void resync(int productId, int stock) {
+        AtomicLong counter = counters.get(productId);
+        if (counter == null) return;
+        long state;
+        do {
+            state = counter.get();
+        } while (!counter.compareAndSet(state, pack(stock - inFlight(state), inFlight(state))));
+    }
+
+    public void forget(int productId) {
+        counters.remove(productId);
+    }
+
+    private AtomicLong counter(int productId) throws SQLException {
+        AtomicLong counter = counters.get(productId);
+        if (counter != null) return counter;
+        // Nothing has been recorded for a product without a counter, so the table value is current
+        int stock = loadStock(productId);
+        if (stock < 0) return new AtomicLong(pack(0, 0));
+        AtomicLong loaded = new AtomicLong(pack(stock, 0));
+        counter = counters.putIfAbsent(productId, loaded);
+        return counter != null ? counter : loaded;
+    }
+
+    // Returns -1 on success, otherwise the quantity that was available
+    private static int tryTake(AtomicLong counter, int quantity) {
+        while (true) {
+            long state = counter.get();
+            int available = available(state);
+            if (available < quantity) return Math.max(available, 0);
+            if (counter.compareAndSet(state, pack(available - quantity, inFlight(state) + quantity))) return -1;
+        }
+    }
+
+    private static void adjust(AtomicLong counter, int availableDelta, int inFlightDelta) {
+        if (counter == null) return;
+        long state;
+        do {
+            state = counter.get();
+        } while (!counter.compareAndSet(state,
+                pack(available(state) + availableDelta, inFlight(state) + inFlightDelta)));
+    }
+
+    private static long pack(int available, int inFlight) {
+        return ((long) available << 32) | (inFlight & 0xFFFFFFFFL);
+    }
+
+    private static int available(long state) {
+        return (int) (state >> 32);
+    }
+
+    private static int inFlight(long state) {
+        return (int) state;
+    }
+
+    private static int loadStock(int productId) throws SQLException {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT stock_quantity FROM products WHERE product_id = ?")) {
+            ps.setInt(1, productId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    // Stock deltas and the matching stock_pending corrections commit together, or not at all
+    private static void write(Batch flushing) throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            write(conn, flushing);
+        }
+    }
+
+    private static void write(Connection conn, Batch flushing) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            addByCase(conn, "products", "stock_quantity", "product_id", flushing.deltas, 1);
+            addByCase(conn, "orders", "stock_pending", "order_id", flushing.orders, -1);
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Puts stock changed by a previous run that never reached the products table back in place:
+     * applies every order's stock_pending to its items and clears it.
+     * The pending orders are locked first, so two instances starting together cannot both apply them.
+     */
+    static void reconcile() throws SQLException {
+        OrderDAO.ensureMigrated();
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Map<Integer, Integer> pending = new HashMap<>();
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT order_id, stock_pending FROM orders WHERE stock_pending <> 0 FOR UPDATE");
+                     ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        pending.put(rs.getInt("order_id"), rs.getInt("stock_pending"));
+                    }
+                }
+                if (pending.isEmpty()) {
+                    conn.commit();
+                    return;
+                }
+
+                Map<Integer, Integer> deltas = new HashMap<>();
+                List<Integer> orderIds = new ArrayList<>(pending.keySet());
+                for (int from = 0; from < orderIds.size(); from += MAX_IDS_PER_STATEMENT) {
+                    List<Integer> chunk = orderIds.subList(from, Math.min(from + MAX_IDS_PER_STATEMENT, orderIds.size()));
+                    String sql = "SELECT order_id, product_id, quantity FROM order_items WHERE order_id IN ("
+                            + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            ps.setInt(i + 1, chunk.get(i));
+                        }
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                int sign = pending.get(rs.getInt("order_id"));
+                                deltas.merge(rs.getInt("product_id"), sign * rs.getInt("quantity"), Integer::sum);
+                            }
+                        }
+                    }
+                }
+
+                addByCase(conn, "products", "stock_quantity", "product_id", deltas, 1);
+                addByCase(conn, "orders", "stock_pending", "order_id", pending, -1);
+                conn.commit();
+                System.out.println("📒 Stock ledger: reconciled pending stock for " + pending.size() + " order(s)");
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        ProductCatalog.getInstance().invalidate();
+    }
+
+    // UPDATE table SET column = column + sign * CASE key ... END, in chunks of MAX_IDS_PER_STATEMENT keys
+    private static void addByCase(Connection conn, String table, String column, String key,
+                                  Map<Integer, Integer> amounts, int sign) throws SQLException {
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : amounts.entrySet()) {
+            if (entry.getValue() != 0) entries.add(entry);
+        }
+        for (int from = 0; from < entries.size(); from += MAX_IDS_PER_STATEMENT) {
+            List<Map.Entry<Integer, Integer>> chunk = entries.subList(from, Math.min(from + MAX_IDS_PER_STATEMENT, entries.size()));
+            StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ").append(column)
+                    .append(" = ").append(column).append(sign < 0 ? " - " : " + ").append("CASE ").append(key);
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(" WHEN ? THEN ?");
+            }
+            sql.append(" END WHERE ").append(key).append(" IN (")
+                    .append(String.join(",", Collections.nCopies(chunk.size(), "?"))).append(")");
+            try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                int i = 1;
+                for (Map.Entry<Integer, Integer> entry : chunk) {
+                    ps.setInt(i++, entry.getKey());
+                    ps.setInt(i++, entry.getValue());
+                }
+                for (Map.Entry<Integer, Integer> entry : chunk) {
+                    ps.setInt(i++, entry.getKey());
+                }
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    public static Stats getStats() {
+        Stats stats = new Stats();
+        stats.enabled = ENABLED;
+        StockLedger ledger = instance;
+        if (ledger == null) return stats;
+        stats.trackedProducts = ledger.counters.size();
+        stats.admitted = ledger.admitted.sum();
+        stats.rejected = ledger.rejected.sum();
+        stats.flushes = ledger.flushes.sum();
+        stats.flushFailures = ledger.flushFailures.sum();
+        stats.flushedOrders = ledger.flushedOrders.sum();
+        ledger.batchLock.readLock().lock();
+        try {
+            stats.pendingOrders = ledger.batch.orders.size();
+        } finally {
+            ledger.batchLock.readLock().unlock();
+        }
+        return stats;
+    }
+
+
+    public static class Stats {
+        public boolean enabled;
+        public int trackedProducts;
+        public long admitted;
+        public long rejected;
+        public int pendingOrders;
+        public long flushes;
+        public long flushFailures;
+        public long flushedOrders;
+    }
+
+    @FunctionalInterface
+    public interface StockWrite {
+        boolean run(Connection conn) throws SQLException;
+    }
+
+    // productId -> net stock delta, and orderId -> stock_pending already written for it
+    private static class Batch {
+        final ConcurrentHashMap<Integer, Integer> deltas = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Integer, Integer> orders = new ConcurrentHashMap<>();
+    }
+}
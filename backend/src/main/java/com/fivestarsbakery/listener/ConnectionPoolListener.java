@@ -0,0 +1,52 @@
+package com.fivestarsbakery.listener;
+
+import com.fivestarsbakery.dao.OrderIntake;
+import com.fivestarsbakery.dao.ReviewIntake;
+import com.fivestarsbakery.dao.StockLedger;
+import com.fivestarsbakery.util.DBConnection;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Enumeration;
+
+/**
+ * Owns the lifecycle of the JDBC connection pool:
+ * opens it when the webapp starts and closes every connection when it stops.
+ */
+@WebListener
+public class ConnectionPoolListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        System.out.println("🔌 ConnectionPoolListener: Starting connection pool...");
+        DBConnection.getPool();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        // Queued orders and reviews and pending ledger deltas need the pool, so they go out first
+        OrderIntake.shutdown();
+        ReviewIntake.shutdown();
+        StockLedger.shutdown();
+        DBConnection.shutdown();
+
+        // Stop the MySQL driver's cleanup thread and deregister drivers loaded by this webapp,
+        // otherwise Tomcat reports a memory leak on redeploy.
+        com.mysql.cj.jdbc.AbandonedConnectionCleanupThread.checkedShutdown();
+        ClassLoader webappLoader = Thread.currentThread().getContextClassLoader();
+        Enumeration<Driver> drivers = DriverManager.getDrivers();
+        while (drivers.hasMoreElements()) {
+            Driver driver = drivers.nextElement();
+            if (driver.getClass().getClassLoader() == webappLoader) {
+                try {
+                    DriverManager.deregisterDriver(driver);
+                } catch (SQLException e) {
+                    System.out.println("⚠️ Could not deregister JDBC driver: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
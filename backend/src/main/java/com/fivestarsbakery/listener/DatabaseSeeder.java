@@ -1,5 +1,7 @@
 package com.fivestarsbakery.listener;
 
+import com.fivestarsbakery.dao.FeedbackDAO;
+import com.fivestarsbakery.dao.StockLedger;
 import com.fivestarsbakery.util.DBConnection;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
@@ -15,15 +17,20 @@ import java.util.stream.Collectors;
 @WebListener
 public class DatabaseSeeder implements ServletContextListener {
 
+    private static final int WARM_UP_ATTEMPTS = 15;
+    private static final long WARM_UP_DELAY_MS = 2000;
+
     @Override
     public void contextInitialized(ServletContextEvent sce) {
         System.out.println("🌱 DatabaseSeeder: Checking database state...");
 
+        // Warm-up retries happen here, once, on the startup thread; request threads fail fast instead
+        if (!DBConnection.awaitAvailable(WARM_UP_ATTEMPTS, WARM_UP_DELAY_MS)) {
+            System.out.println("⚠️ DatabaseSeeder: Could not connect to database. Skipping seeding.");
+            return;
+        }
+
         try (Connection con = DBConnection.getConnection()) {
-            if (con == null) {
-                System.out.println("⚠️ DatabaseSeeder: Could not connect to database. Skipping seeding.");
-                return;
-            }
 
             
             boolean needsSeeding = false;
@@ -54,6 +61,12 @@ public class DatabaseSeeder implements ServletContextListener {
                 System.out.println("✅ DatabaseSeeder: Database already populated.");
             }
 
+            // Stock a crashed instance had taken but not yet written back
+            StockLedger.startup();
+
+            // Rating aggregates are read once here and kept up to date by new reviews
+            new FeedbackDAO().loadRatingAggregates();
+
         } catch (Exception e) {
             System.err.println("❌ DatabaseSeeder: Critical Error during initialization.");
             e.printStackTrace();
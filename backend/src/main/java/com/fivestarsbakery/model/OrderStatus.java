@@ -0,0 +1,55 @@
+package com.fivestarsbakery.model;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The values of the orders.status ENUM and the moves allowed between them:
+ * - PENDING -> PREPARING -> READY_FOR_PICKUP -> COMPLETED
+ * - PENDING, PREPARING or READY_FOR_PICKUP -> CANCELLED
+ * COMPLETED and CANCELLED are final.
+ */
+public enum OrderStatus {
+    PENDING,
+    PREPARING,
+    READY_FOR_PICKUP,
+    COMPLETED,
+    CANCELLED;
+
+    private static final Map<OrderStatus, EnumSet<OrderStatus>> PREDECESSORS = new EnumMap<>(OrderStatus.class);
+
+    static {
+        for (OrderStatus status : values()) {
+            PREDECESSORS.put(status, EnumSet.noneOf(OrderStatus.class));
+        }
+        PREDECESSORS.get(PREPARING).add(PENDING);
+        PREDECESSORS.get(READY_FOR_PICKUP).add(PREPARING);
+        PREDECESSORS.get(COMPLETED).add(READY_FOR_PICKUP);
+        PREDECESSORS.get(CANCELLED).addAll(EnumSet.of(PENDING, PREPARING, READY_FOR_PICKUP));
+    }
+
+    public boolean canMoveTo(OrderStatus next) {
+        return PREDECESSORS.get(next).contains(this);
+    }
+
+    /**
+     * The statuses an order may be in to move to this one.
+     */
+    public Set<OrderStatus> predecessors() {
+        return EnumSet.copyOf(PREDECESSORS.get(this));
+    }
+
+    /**
+     * Case-insensitive lookup; null for anything that is not a status.
+     */
+    public static OrderStatus parse(String value) {
+        if (value == null) return null;
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
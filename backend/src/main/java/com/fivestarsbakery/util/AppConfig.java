@@ -0,0 +1,69 @@
+package com.fivestarsbakery.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Resolves configuration values in this order:
+ * environment variable, JVM system property, application.properties, default.
+ */
+public final class AppConfig {
+
+    private static final Properties FILE_PROPERTIES = loadFileProperties();
+
+    private AppConfig() {
+    }
+
+    private static Properties loadFileProperties() {
+        Properties prop = new Properties();
+        try (InputStream input = AppConfig.class.getClassLoader().getResourceAsStream("application.properties")) {
+            if (input != null) {
+                prop.load(input);
+                System.out.println("📄 Loaded configuration from application.properties");
+            }
+        } catch (IOException ex) {
+            System.out.println("⚠️ Could not load application.properties");
+        }
+        return prop;
+    }
+
+    public static String get(String key) {
+        String value = System.getenv(key);
+        if (value == null) value = System.getProperty(key);
+        if (value == null) value = FILE_PROPERTIES.getProperty(key);
+        return value;
+    }
+
+    public static String get(String key, String defaultValue) {
+        String value = get(key);
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("⚠️ Invalid integer for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("⚠️ Invalid number for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key);
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+}
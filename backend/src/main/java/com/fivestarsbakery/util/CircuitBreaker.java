@@ -0,0 +1,82 @@
+package com.fivestarsbakery.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker for an unreliable dependency.
+ * - CLOSED: requests go through; consecutive failures are counted
+ * - OPEN: requests are rejected immediately after failureThreshold consecutive failures
+ * - HALF_OPEN: a single background probe is in flight; requests are still rejected
+ *
+ * Request threads never probe. The owner schedules probes and reports the outcome.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder openCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public CircuitBreaker(String name, int failureThreshold) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+    }
+
+    public boolean allowRequest() {
+        if (state.get() == State.CLOSED) {
+            return true;
+        }
+        rejectedCount.increment();
+        return false;
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        State previous = state.getAndSet(State.CLOSED);
+        if (previous != State.CLOSED) {
+            System.out.println("✅ Circuit '" + name + "' closed: dependency is reachable again.");
+        }
+    }
+
+    /**
+     * @return true if this failure tripped the circuit, so the caller should schedule a probe
+     */
+    public boolean recordFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (failures >= failureThreshold && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            openCount.increment();
+            System.out.println("🚫 Circuit '" + name + "' opened after " + failures + " consecutive failures.");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Moves OPEN to HALF_OPEN. Only the caller that wins this transition runs the probe.
+     */
+    public boolean tryHalfOpen() {
+        return state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    public void probeFailed() {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public long getOpenCount() {
+        return openCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+}
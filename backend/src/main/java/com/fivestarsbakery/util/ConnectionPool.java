@@ -0,0 +1,508 @@
+package com.fivestarsbakery.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded JDBC connection pool.
+ * - Keeps between minSize and maxSize physical connections open
+ * - Validates idle connections on borrow and evicts those idle for too long
+ * - Optionally logs connections held longer than the leak threshold, with the borrowing
+ *   stack trace (off when the threshold is 0, since every borrow then captures a trace)
+ * - Fails fast through a circuit breaker while new connections cannot be opened,
+ *   probing the database on the housekeeping thread until it is reachable again
+ *
+ * Connections handed out are proxies: close() returns the physical connection to the pool.
+ */
+public class ConnectionPool {
+
+    // Connections used within this window are handed out again without a validation round trip
+    private static final long VALIDATION_BYPASS_MS = 500;
+    private static final long HOUSEKEEPING_PERIOD_MS = 30_000;
+
+    private final String url;
+    private final Properties connectionProperties = new Properties();
+    private final int minSize;
+    private final int maxSize;
+    private final long connectionTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long leakThresholdMs;
+    private final int validationTimeoutSeconds;
+    private final long probeIntervalMs;
+    private final CircuitBreaker circuitBreaker;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition connectionAvailable = lock.newCondition();
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> inUse = ConcurrentHashMap.newKeySet();
+    private int totalConnections;
+    private int waitingThreads;
+    private volatile boolean closed;
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder borrowNanos = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+
+    private final ScheduledExecutorService housekeeper;
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+            long connectionTimeoutMs, long idleTimeoutMs, long leakThresholdMs, int validationTimeoutSeconds,
+            long connectTimeoutMs, int circuitFailureThreshold, long probeIntervalMs) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be at least 1");
+        this.url = url;
+        this.connectionProperties.setProperty("user", user);
+        this.connectionProperties.setProperty("password", password);
+        if (url.startsWith("jdbc:mysql:")) {
+            // Bound the TCP connect so a dead host cannot hang the caller for the OS default
+            this.connectionProperties.setProperty("connectTimeout", String.valueOf(connectTimeoutMs));
+        }
+        this.minSize = Math.max(0, Math.min(minSize, maxSize));
+        this.maxSize = maxSize;
+        this.connectionTimeoutMs = connectionTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.leakThresholdMs = leakThresholdMs;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.probeIntervalMs = probeIntervalMs;
+        this.circuitBreaker = new CircuitBreaker("database", circuitFailureThreshold);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts the housekeeping thread. Called once the pool is fully constructed, so the task never sees a partial pool.
+     */
+    public void start() {
+        housekeeper.scheduleWithFixedDelay(this::housekeep, HOUSEKEEPING_PERIOD_MS, HOUSEKEEPING_PERIOD_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens connections until the pool holds minSize. Failures are logged, not thrown.
+     */
+    public void fillToMinimum() {
+        while (!closed && circuitBreaker.getState() == CircuitBreaker.State.CLOSED) {
+            lock.lock();
+            try {
+                if (totalConnections >= minSize) return;
+                totalConnections++;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                PooledConnection pc = new PooledConnection(openPhysicalConnection());
+                returnToIdle(pc);
+            } catch (SQLException e) {
+                releaseSlot();
+                System.out.println("⚠️ Connection pool: could not open connection: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (!circuitBreaker.allowRequest()) {
+            throw new SQLTransientConnectionException("Database circuit is " + circuitBreaker.getState()
+                    + "; failing fast until a background probe succeeds");
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(connectionTimeoutMs);
+
+        while (true) {
+            PooledConnection pc;
+            boolean mustCreate = false;
+
+            lock.lock();
+            try {
+                while (!closed && idle.isEmpty() && totalConnections >= maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeoutCount.increment();
+                        throw new SQLTimeoutException("Timed out after " + connectionTimeoutMs
+                                + "ms waiting for a database connection (active=" + inUse.size() + ", max=" + maxSize + ")");
+                    }
+                    waitingThreads++;
+                    try {
+                        connectionAvailable.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", e);
+                    } finally {
+                        waitingThreads--;
+                    }
+                }
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+
+                pc = idle.pollFirst();
+                if (pc == null) {
+                    totalConnections++;
+                    mustCreate = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (mustCreate) {
+                try {
+                    pc = new PooledConnection(openPhysicalConnection());
+                } catch (SQLException e) {
+                    releaseSlot();
+                    throw e;
+                }
+            } else if (!isAlive(pc)) {
+                destroy(pc);
+                continue;
+            }
+
+            pc.borrowedAt = System.currentTimeMillis();
+            pc.borrowTrace = leakThresholdMs > 0 ? new Throwable("Connection borrowed here") : null;
+            pc.leakReported = false;
+            inUse.add(pc);
+
+            borrowCount.increment();
+            borrowNanos.add(System.nanoTime() - start);
+            return pc.newHandle();
+        }
+    }
+
+    private Connection openPhysicalConnection() throws SQLException {
+        Connection con;
+        try {
+            con = DriverManager.getConnection(url, connectionProperties);
+        } catch (SQLException e) {
+            if (circuitBreaker.recordFailure()) {
+                scheduleProbe();
+            }
+            throw e;
+        }
+        circuitBreaker.recordSuccess();
+        createdCount.increment();
+        return con;
+    }
+
+    /**
+     * Opens one connection regardless of the circuit state and keeps it in the pool.
+     * Used by the background probe and by startup warm-up.
+     *
+     * @return true if the database accepted the connection
+     */
+    public boolean probe() {
+        boolean keep;
+        lock.lock();
+        try {
+            if (closed) return false;
+            keep = totalConnections < maxSize;
+            if (keep) totalConnections++;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            Connection con = DriverManager.getConnection(url, connectionProperties);
+            createdCount.increment();
+            circuitBreaker.recordSuccess();
+            if (keep) {
+                returnToIdle(new PooledConnection(con));
+            } else {
+                closeQuietly(con);
+            }
+            return true;
+        } catch (SQLException e) {
+            if (keep) releaseSlot();
+            System.out.println("⚠️ Connection pool: probe failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void scheduleProbe() {
+        if (closed) return;
+        housekeeper.schedule(() -> {
+            if (!circuitBreaker.tryHalfOpen()) return;
+            if (probe()) {
+                fillToMinimum();
+            } else {
+                circuitBreaker.probeFailed();
+                scheduleProbe();
+            }
+        }, probeIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public int getRetryAfterSeconds() {
+        return (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(probeIntervalMs + 999));
+    }
+
+    private boolean isAlive(PooledConnection pc) {
+        if (System.currentTimeMillis() - pc.lastUsed < VALIDATION_BYPASS_MS) {
+            return true;
+        }
+        try {
+            return pc.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        inUse.remove(pc);
+
+        boolean healthy;
+        try {
+            healthy = !pc.physical.isClosed();
+            if (healthy && !pc.physical.getAutoCommit()) {
+                // Never hand out a connection with an unfinished transaction
+                pc.physical.rollback();
+                pc.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            healthy = false;
+        }
+
+        if (healthy && !closed) {
+            returnToIdle(pc);
+        } else {
+            destroy(pc);
+        }
+    }
+
+    private void returnToIdle(PooledConnection pc) {
+        pc.lastUsed = System.currentTimeMillis();
+        lock.lock();
+        try {
+            idle.offerFirst(pc);
+            connectionAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void destroy(PooledConnection pc) {
+        releaseSlot();
+        closeQuietly(pc.physical);
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            totalConnections--;
+            connectionAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeQuietly(Connection con) {
+        destroyedCount.increment();
+        try {
+            con.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void housekeep() {
+        try {
+            evictIdleConnections();
+            detectLeaks();
+            fillToMinimum();
+        } catch (Exception e) {
+            System.err.println("❌ Connection pool housekeeping failed: " + e.getMessage());
+        }
+    }
+
+    private void evictIdleConnections() {
+        if (idleTimeoutMs <= 0) return;
+        long now = System.currentTimeMillis();
+        List<PooledConnection> evicted = new ArrayList<>();
+
+        lock.lock();
+        try {
+            // Oldest idle connections sit at the tail
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && totalConnections - evicted.size() > minSize) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastUsed < idleTimeoutMs) break;
+                it.remove();
+                evicted.add(pc);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection pc : evicted) {
+            destroy(pc);
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakThresholdMs <= 0) return;
+        long now = System.currentTimeMillis();
+        for (PooledConnection pc : inUse) {
+            if (!pc.leakReported && now - pc.borrowedAt > leakThresholdMs) {
+                pc.leakReported = true;
+                leakCount.increment();
+                System.err.println("⚠️ Connection pool: connection held for " + (now - pc.borrowedAt)
+                        + "ms without being closed (possible leak)");
+                if (pc.borrowTrace != null) {
+                    pc.borrowTrace.printStackTrace();
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            totalConnections -= toClose.size();
+            connectionAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        housekeeper.shutdownNow();
+        for (PooledConnection pc : toClose) {
+            closeQuietly(pc.physical);
+        }
+        if (!inUse.isEmpty()) {
+            System.out.println("⚠️ Connection pool: " + inUse.size() + " connection(s) still in use at shutdown");
+        }
+        System.out.println("🛑 Connection pool shut down.");
+    }
+
+    public Stats getStats() {
+        Stats stats = new Stats();
+        lock.lock();
+        try {
+            stats.idle = idle.size();
+            stats.total = totalConnections;
+            stats.waiting = waitingThreads;
+        } finally {
+            lock.unlock();
+        }
+        stats.active = inUse.size();
+        stats.minSize = minSize;
+        stats.maxSize = maxSize;
+        long borrows = borrowCount.sum();
+        stats.borrows = borrows;
+        stats.avgBorrowMillis = borrows == 0 ? 0.0 : borrowNanos.sum() / 1_000_000.0 / borrows;
+        stats.timeouts = timeoutCount.sum();
+        stats.created = createdCount.sum();
+        stats.destroyed = destroyedCount.sum();
+        stats.leaksDetected = leakCount.sum();
+        stats.circuitState = circuitBreaker.getState().name();
+        stats.circuitOpens = circuitBreaker.getOpenCount();
+        stats.rejectedWhileOpen = circuitBreaker.getRejectedCount();
+        return stats;
+    }
+
+
+    public static class Stats {
+        public int active;
+        public int idle;
+        public int total;
+        public int waiting;
+        public int minSize;
+        public int maxSize;
+        public long borrows;
+        public double avgBorrowMillis;
+        public long timeouts;
+        public long created;
+        public long destroyed;
+        public long leaksDetected;
+        public String circuitState;
+        public long circuitOpens;
+        public long rejectedWhileOpen;
+    }
+
+    private class PooledConnection {
+        final Connection physical;
+        volatile long lastUsed = System.currentTimeMillis();
+        volatile long borrowedAt;
+        volatile Throwable borrowTrace;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new Handle(this));
+        }
+    }
+
+    /**
+     * One borrow of a pooled connection. After close() the handle is dead,
+     * so a stale reference can never return or use the connection twice.
+     */
+    private class Handle implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean released;
+
+        Handle(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(pc);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pc.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pc.physical + "]";
+                default:
+                    if (released) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    try {
+                        return method.invoke(pc.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -1,89 +1,138 @@
 package com.fivestarsbakery.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class DBConnection {
 
-    
     private static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/bakerydb?allowPublicKeyRetrieval=true&useSSL=false";
     private static final String DEFAULT_USER = "bakeryuser";
     private static final String DEFAULT_PASSWORD = "bakerypass";
 
-    
+    private static final ReentrantLock POOL_LOCK = new ReentrantLock();
+    private static volatile ConnectionPool pool;
+
+    /**
+     * Borrows a pooled connection. Never sleeps and never returns null:
+     * waits at most DB_POOL_CONNECTION_TIMEOUT_MS, or fails immediately while the circuit is open.
+     *
+     * @throws DatabaseUnavailableException if no connection can be obtained
+     */
     public static Connection getConnection() {
-        Connection con = null;
+        ConnectionPool current = getPool();
         try {
-            
-            Class.forName("com.mysql.cj.jdbc.Driver");
+            return current.getConnection();
+        } catch (SQLException e) {
+            throw new DatabaseUnavailableException("Database unavailable: " + e.getMessage(), e,
+                    current.getRetryAfterSeconds());
+        }
+    }
+
+    /**
+     * Startup warm-up: probes the database until it answers. Only call this from startup code,
+     * never from a request thread.
+     */
+    public static boolean awaitAvailable(int attempts, long delayMs) {
+        for (int i = 0; i < attempts; i++) {
+            if (getPool().probe()) {
+                System.out.println("✅ Database Connected Successfully.");
+                return true;
+            }
+            System.out.println("⚠️ Connection failed, retrying in " + (delayMs / 1000) + "s... (" + (i + 1) + "/" + attempts + ")");
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        System.out.println("❌ Could not connect to database after " + (attempts * delayMs / 1000) + " seconds.");
+        return false;
+    }
 
-            
-            String url = System.getenv("DB_URL");
-            String user = System.getenv("DB_USER");
-            String password = System.getenv("DB_PASSWORD");
-
-            
-            if (url == null || user == null || password == null) {
-                try (java.io.InputStream input = DBConnection.class.getClassLoader().getResourceAsStream("application.properties")) {
-                    if (input != null) {
-                        java.util.Properties prop = new java.util.Properties();
-                        prop.load(input);
-
-                        
-                        if (url == null) url = prop.getProperty("spring.datasource.url");
-                        if (user == null) user = prop.getProperty("spring.datasource.username");
-                        if (password == null) password = prop.getProperty("spring.datasource.password");
-                        
-                        
-                        if (url == null) url = prop.getProperty("DB_URL");
-                        if (user == null) user = prop.getProperty("DB_USER");
-                        if (password == null) password = prop.getProperty("DB_PASSWORD");
-                        
-                        System.out.println("📄 Loaded configuration from application.properties");
-                    }
-                } catch (java.io.IOException ex) {
-                    System.out.println("⚠️ Could not load application.properties");
-                }
+    public static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current != null) return current;
+
+        POOL_LOCK.lock();
+        try {
+            if (pool == null) {
+                pool = createPool();
             }
+            return pool;
+        } finally {
+            POOL_LOCK.unlock();
+        }
+    }
 
-            
-            if (url == null) url = DEFAULT_URL;
-            if (user == null) user = DEFAULT_USER;
-            if (password == null) password = DEFAULT_PASSWORD;
-
-            
-            
-
-            
-            for (int i = 0; i < 15; i++) {
-                try {
-                    con = DriverManager.getConnection(url, user, password);
-                    if (con != null) {
-                        System.out.println("✅ Database Connected Successfully to: " + url);
-                        return con;
-                    }
-                } catch (SQLException e) {
-                    System.out.println("⚠️ Connection failed, retrying in 2s... (" + (i + 1) + "/15)");
-                    
-                    
-                    try { Thread.sleep(2000); } catch (InterruptedException ex) { 
-                        Thread.currentThread().interrupt(); 
-                    }
-                }
+    public static void shutdown() {
+        POOL_LOCK.lock();
+        try {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
             }
-            System.out.println("❌ Could not connect to database after 30 seconds.");
-            
+        } finally {
+            POOL_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Makes a forward-only query hand over rows as they arrive instead of buffering the whole result.
+     * Connector/J only streams with a fetch size of Integer.MIN_VALUE; other drivers take the size as given.
+     */
+    public static void streamResults(Statement stmt, int fetchSize) throws SQLException {
+        String url = stmt.getConnection().getMetaData().getURL();
+        stmt.setFetchSize(url != null && url.startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : fetchSize);
+    }
+
+    private static ConnectionPool createPool() {
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
         } catch (ClassNotFoundException e) {
             System.out.println("❌ Driver Not Found! (Check pom.xml)");
             e.printStackTrace();
         }
-        return null;
+
+        String url = AppConfig.get("DB_URL");
+        String user = AppConfig.get("DB_USER");
+        String password = AppConfig.get("DB_PASSWORD");
+
+        if (url == null) url = AppConfig.get("spring.datasource.url");
+        if (user == null) user = AppConfig.get("spring.datasource.username");
+        if (password == null) password = AppConfig.get("spring.datasource.password");
+
+        if (url == null) url = DEFAULT_URL;
+        if (user == null) user = DEFAULT_USER;
+        if (password == null) password = DEFAULT_PASSWORD;
+
+        ConnectionPool newPool = new ConnectionPool(url, user, password,
+                AppConfig.getInt("DB_POOL_MIN_SIZE", 2),
+                AppConfig.getInt("DB_POOL_MAX_SIZE", 10),
+                AppConfig.getLong("DB_POOL_CONNECTION_TIMEOUT_MS", 5_000),
+                AppConfig.getLong("DB_POOL_IDLE_TIMEOUT_MS", 300_000),
+                AppConfig.getLong("DB_POOL_LEAK_THRESHOLD_MS", 0),
+                AppConfig.getInt("DB_POOL_VALIDATION_TIMEOUT_S", 2),
+                AppConfig.getLong("DB_CONNECT_TIMEOUT_MS", 5_000),
+                AppConfig.getInt("DB_CIRCUIT_FAILURE_THRESHOLD", 3),
+                AppConfig.getLong("DB_CIRCUIT_PROBE_INTERVAL_MS", 5_000));
+        newPool.start();
+        newPool.fillToMinimum();
+        System.out.println("✅ Connection pool ready for: " + url);
+        return newPool;
     }
 
-    
-    
-    public static void main(String[] args) {
-        getConnection();
+    public static void main(String[] args) throws SQLException {
+        try (Connection con = getConnection()) {
+            if (con.isValid(2)) {
+                System.out.println("✅ Database Connected Successfully!");
+            } else {
+                System.out.println("❌ Database connection is not valid");
+            }
+        } finally {
+            shutdown();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package com.fivestarsbakery.util;
+
+/**
+ * Thrown when no database connection can be obtained within the configured wait,
+ * or immediately while the connection circuit is open.
+ * Servlets let it propagate so ServiceUnavailableFilter can answer 503.
+ */
+public class DatabaseUnavailableException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public DatabaseUnavailableException(String message, Throwable cause, int retryAfterSeconds) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
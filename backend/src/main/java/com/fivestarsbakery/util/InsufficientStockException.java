@@ -0,0 +1,31 @@
+package com.fivestarsbakery.util;
+
+/**
+ * Thrown when a checkout asks for more of a product than is in stock (or the product no longer exists).
+ * The order transaction is rolled back; OrderServlet answers 409 naming the product.
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    private final int productId;
+    private final int requested;
+    private final int available;
+
+    public InsufficientStockException(int productId, int requested, int available) {
+        super("Insufficient stock for product ID: " + productId);
+        this.productId = productId;
+        this.requested = requested;
+        this.available = available;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+}
@@ -0,0 +1,58 @@
+package com.fivestarsbakery.util;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Pickup dates and times as the shop sees them: wall-clock time in the bakery's zone.
+ * Formatters are immutable and thread-safe, so they are built once and shared.
+ * - Date: yyyy-MM-dd
+ * - Time: hh:mm a (e.g. "01:00 PM"), parsed case-insensitively with 1- or 2-digit hours
+ */
+public final class PickupTimes {
+
+    public static final ZoneId ZONE = ZoneId.of(AppConfig.get("BAKERY_TIME_ZONE", "Asia/Kuala_Lumpur"));
+
+    public static final DateTimeFormatter DATE = DateTimeFormatter.ISO_LOCAL_DATE;
+    public static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("hh:mm a", Locale.ENGLISH);
+
+    private static final DateTimeFormatter TIME_INPUT = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .appendPattern("h:mm a")
+            .toFormatter(Locale.ENGLISH);
+
+    private PickupTimes() {
+    }
+
+    public static LocalDateTime now() {
+        return LocalDateTime.now(ZONE);
+    }
+
+    /**
+     * Combines the date and time sent by Checkout; null if either is missing or malformed.
+     */
+    public static LocalDateTime parse(String date, String time) {
+        if (date == null || time == null || date.isEmpty() || time.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.of(LocalDate.parse(date.trim(), DATE), LocalTime.parse(time.trim(), TIME_INPUT));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public static String formatDate(LocalDateTime pickup) {
+        return pickup == null ? null : DATE.format(pickup);
+    }
+
+    public static String formatTime(LocalDateTime pickup) {
+        return pickup == null ? null : TIME.format(pickup);
+    }
+}
@@ -0,0 +1,34 @@
+package com.fivestarsbakery.util;
+
+import java.util.List;
+
+/**
+ * Thrown when a checkout asks for a pickup slot that already has PICKUP_SLOT_CAPACITY orders.
+ * Nothing is written; OrderServlet answers 409 with the nearest slots that day that still have room.
+ */
+public class SlotFullException extends RuntimeException {
+
+    private final String pickupDate;
+    private final String pickupTime;
+    private final List<String> alternatives;
+
+    public SlotFullException(String pickupDate, String pickupTime, List<String> alternatives) {
+        super("The " + pickupTime + " pickup slot on " + pickupDate + " is full");
+        this.pickupDate = pickupDate;
+        this.pickupTime = pickupTime;
+        this.alternatives = alternatives;
+    }
+
+    public String getPickupDate() {
+        return pickupDate;
+    }
+
+    public String getPickupTime() {
+        return pickupTime;
+    }
+
+    // Pickup times ("hh:mm a") on the same date, nearest first
+    public List<String> getAlternatives() {
+        return alternatives;
+    }
+}
@@ -12,28 +12,42 @@ const AdminOrders = () => {
     const [orders, setOrders] = useState([]);
     const [loading, setLoading] = useState(true);
     const [updating, setUpdating] = useState(null);
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
 
-    useEffect(() => {
-
-        if (!user || user.role !== 'ADMIN') {
-            navigate('/');
-            return;
-        }
+    // The backend returns one page at a time; X-Next-Cursor points at the next one
+    const loadOrders = (cursor) => {
+        const url = "https://bakery-backend-kt9m.onrender.com/api/orders?all=true"
+            + (cursor ? `&cursor=${encodeURIComponent(cursor)}` : "");
+        if (cursor) setLoadingMore(true);
 
-        fetch("https://bakery-backend-kt9m.onrender.com/api/orders?all=true")
+        fetch(url)
             .then(res => {
                 if (!res.ok) throw new Error("Failed to fetch orders");
+                setNextCursor(res.headers.get("X-Next-Cursor"));
                 return res.json();
             })
             .then(data => {
                 const orderList = Array.isArray(data) ? data : [];
-                setOrders(orderList);
-                setLoading(false);
+                setOrders(prev => cursor ? [...prev, ...orderList] : orderList);
             })
             .catch(err => {
                 console.error(err);
+            })
+            .finally(() => {
                 setLoading(false);
+                setLoadingMore(false);
             });
+    };
+
+    useEffect(() => {
+
+        if (!user || user.role !== 'ADMIN') {
+            navigate('/');
+            return;
+        }
+
+        loadOrders(null);
     }, [user, navigate]);
 
     const handleStatusChange = async (orderId, newStatus) => {
@@ -54,6 +68,13 @@ const AdminOrders = () => {
                     o.orderId === orderId ? { ...o, status: newStatus } : o
                 ));
                 showToast(`Order #${orderId} updated to ${newStatus}`, "success");
+            } else if (response.status === 409) {
+                // Not an allowed move from the order's current status (or someone else changed it first)
+                const data = await response.json();
+                setOrders(prev => prev.map(o =>
+                    o.orderId === orderId ? { ...o, status: data.status } : o
+                ));
+                showToast(data.message, "error");
             } else {
                 showToast("Failed to update status", "error");
             }
@@ -173,6 +194,17 @@ const AdminOrders = () => {
                     {orders.length === 0 && (
                         <div className="p-10 text-center text-gray-500">No orders found.</div>
                     )}
+                    {nextCursor && (
+                        <div className="p-4 text-center border-t border-gray-100">
+                            <button
+                                onClick={() => loadOrders(nextCursor)}
+                                disabled={loadingMore}
+                                className="px-6 py-2 rounded-lg bg-header-bg text-white font-bold hover:opacity-90 transition-all duration-300 disabled:opacity-50"
+                            >
+                                {loadingMore ? "Loading..." : "Load More Orders"}
+                            </button>
+                        </div>
+                    )}
                 </div>
             </div>
         </div>
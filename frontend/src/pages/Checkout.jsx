@@ -1,4 +1,4 @@
-import React, { useState } from 'react';
+import React, { useRef, useState } from 'react';
 import { useCart } from '../context/CartContext';
 import { useAuth } from '../context/AuthContext';
 import { useNotification } from '../context/NotificationContext';
@@ -40,36 +40,35 @@ const Checkout = () => {
     });
     const [cardErrors, setCardErrors] = useState({});
     const [isProcessing, setIsProcessing] = useState(false);
+    // One key per checkout attempt, so a double-click or retried request cannot place the order twice
+    const orderKey = useRef(null);
 
 
-    const timeSlots = [
-        '10:00 AM',
-        '11:00 AM',
-        '12:00 PM',
-        '01:00 PM',
-        '02:00 PM',
-        '03:00 PM',
-        '04:00 PM',
-        '05:00 PM',
-        '06:00 PM'
-    ];
+    // Slots for the chosen date from the server: [{ time: '10:00 AM', available: 3 }], started slots left out
+    const [timeSlots, setTimeSlots] = useState([]);
 
-    const getAvailableTimeSlots = () => {
-        const today = getTodayDate();
-        if (pickup.date !== today) return timeSlots;
-
-        const currentHour = new Date().getHours();
-
-        return timeSlots.filter(slot => {
-            let [hourStr, part] = slot.split(' ');
-            let hour = parseInt(hourStr.split(':')[0], 10);
+    const loadTimeSlots = async (date) => {
+        try {
+            const response = await fetch(`https://bakery-backend-kt9m.onrender.com/api/pickup-slots?date=${date}`);
+            const data = await response.json();
+            const slots = response.ok ? data.slots : [];
+            setTimeSlots(slots);
+            // Drop a chosen time that has filled up or started in the meantime
+            setPickup(prev => prev.date === date && prev.time &&
+                !slots.some(slot => slot.time === prev.time && slot.available > 0)
+                ? { ...prev, time: '' }
+                : prev);
+        } catch (error) {
+            console.error("Pickup slot error:", error);
+            setTimeSlots([]);
+        }
+    };
 
-            if (part === 'PM' && hour !== 12) hour += 12;
-            if (part === 'AM' && hour === 12) hour = 0;
+    React.useEffect(() => {
+        if (pickup.date) loadTimeSlots(pickup.date);
+    }, [pickup.date]);
 
-            return hour > currentHour;
-        });
-    };
+    const getAvailableTimeSlots = () => timeSlots.filter(slot => slot.available > 0).map(slot => slot.time);
 
 
     const getCardType = (number) => {
@@ -182,26 +181,8 @@ const Checkout = () => {
 
     const handleChange = (e) => {
         const { name, value } = e.target;
-        setPickup(prev => {
-            const newState = { ...prev, [name]: value };
-
-            // If date changed, re-validate the current time
-            if (name === 'date') {
-                const today = getTodayDate();
-                // If the new date is today, check if the previously selected time is still valid
-                if (value === today) {
-                    const availableSlotsForToday = getAvailableTimeSlots(); // This will use the *new* date (value) implicitly
-                    // Check if the previously selected time is still in the available slots
-                    if (prev.time && !availableSlotsForToday.includes(prev.time)) {
-                        newState.time = ''; // Clear time if it's no longer valid for today
-                    }
-                } else {
-                    // If date changed to a future date, all times are valid, no need to clear unless it was cleared for today
-                    // But we don't need to explicitly set it if it was already valid.
-                }
-            }
-            return newState;
-        });
+        // A new date reloads its slots, which clears the time if it is not bookable that day
+        setPickup(prev => ({ ...prev, [name]: value }));
     };
 
     const handleCardChange = (e) => {
@@ -311,11 +292,16 @@ const Checkout = () => {
             paymentMethod: paymentMethod
         };
 
+        if (!orderKey.current) {
+            orderKey.current = crypto.randomUUID();
+        }
+
         try {
             const response = await fetch('https://bakery-backend-kt9m.onrender.com/api/orders', {
                 method: 'POST',
                 headers: {
-                    'Content-Type': 'application/json'
+                    'Content-Type': 'application/json',
+                    'Idempotency-Key': orderKey.current
                 },
                 body: JSON.stringify(orderData)
             });
@@ -329,6 +315,14 @@ const Checkout = () => {
                 navigate('/');
             } else {
                 const err = await response.json();
+                // Failed attempts are not kept by the server, so the next one gets a fresh key;
+                // a 409 without productId or alternatives means the first submission is still being processed
+                if (response.status !== 409 || err.productId || err.alternatives) {
+                    orderKey.current = null;
+                }
+                if (err.alternatives) {
+                    loadTimeSlots(pickup.date);
+                }
                 showToast(`Failed to place order: ${err.message || 'Unknown error'}`, "error");
             }
         } catch (error) {
@@ -403,11 +397,13 @@ const Checkout = () => {
                                 >
                                     <option value="">Select Pickup Time</option>
                                     {getAvailableTimeSlots().length > 0 ? (
-                                        getAvailableTimeSlots().map(slot => (
-                                            <option key={slot} value={slot}>{slot}</option>
+                                        timeSlots.map(slot => (
+                                            <option key={slot.time} value={slot.time} disabled={slot.available === 0}>
+                                                {slot.available === 0 ? `${slot.time} (Full)` : slot.time}
+                                            </option>
                                         ))
                                     ) : (
-                                        <option disabled>No available slots for today</option>
+                                        <option disabled>No available slots for this date</option>
                                     )}
                                 </select>
                             </div>
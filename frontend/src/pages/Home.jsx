@@ -14,6 +14,7 @@ const Home = () => {
     const [loading, setLoading] = useState(true);
     const [error, setError] = useState(null);
     const [selectedCategory, setSelectedCategory] = useState("All");
+    const [searchHits, setSearchHits] = useState(null);
 
 
     const renderStars = (avgRating) => {
@@ -72,6 +73,31 @@ const Home = () => {
     }, []);
 
 
+    // Ranked matches from the server's search index, kept with the query they answer;
+    // the menu itself is already loaded, and asking for all of it means no match is cut off
+    useEffect(() => {
+        const query = searchQuery.trim();
+        if (!query) {
+            setSearchHits(null);
+            return;
+        }
+        if (products.length === 0) return;
+        const controller = new AbortController();
+        const timer = setTimeout(() => {
+            fetch(`https://bakery-backend-kt9m.onrender.com/api/products/search?q=${encodeURIComponent(query)}&limit=${products.length}`, { signal: controller.signal })
+                .then(res => res.ok ? res.json() : Promise.reject("Search failed"))
+                .then(hits => setSearchHits({ query, ids: hits.map(hit => hit.id) }))
+                .catch(err => {
+                    if (err.name !== 'AbortError') console.error(err);
+                });
+        }, 150);
+        return () => {
+            clearTimeout(timer);
+            controller.abort();
+        };
+    }, [searchQuery, products.length]);
+
+
     const handleAddToCart = async (product) => {
         if (!user) {
             const confirmLogin = await showConfirm(
@@ -91,13 +117,18 @@ const Home = () => {
     if (loading) return <div className="text-center py-20 text-xl font-bold text-gray-500">Loading fresh cakes... 🧁</div>;
     if (error) return <div className="text-center py-20 text-red-500 font-bold">{error}</div>;
 
+    // While searching, products keep the order the search ranked them in. Until the hits for the
+    // current query arrive (or if the search fails), names are matched here instead of showing stale hits
+    const query = searchQuery.trim();
+    const rank = query && searchHits && searchHits.query === query
+        ? new Map(searchHits.ids.map((id, index) => [id, index])) : null;
     const filteredProducts = products
         .filter(product => {
             const matchesCategory = selectedCategory === "All" || product.category === selectedCategory;
-            const matchesSearch = product.name.toLowerCase().includes(searchQuery.toLowerCase());
+            const matchesSearch = rank ? rank.has(product.id) : product.name.toLowerCase().includes(query.toLowerCase());
             return matchesCategory && matchesSearch;
         })
-        .sort((a, b) => a.name.localeCompare(b.name));
+        .sort((a, b) => rank ? rank.get(a.id) - rank.get(b.id) : a.name.localeCompare(b.name));
 
     return (
         <div className="flex flex-col min-h-screen">
@@ -143,6 +143,12 @@ const OrderHistory = () => {
                     order.orderId === orderId ? { ...order, status: 'CANCELLED' } : order
                 ));
                 showToast("Order cancelled successfully", "success");
+            } else if (response.status === 409) {
+                const data = await response.json();
+                setOrders(prev => prev.map(order =>
+                    order.orderId === orderId ? { ...order, status: data.status } : order
+                ));
+                showToast(`This order is already ${getStatusLabel(data.status).toLowerCase()} and can no longer be cancelled`, "error");
             } else {
                 showToast("Failed to cancel order", "error");
             }
@@ -16,6 +16,8 @@ const ProductDetails = () => {
     const [product, setProduct] = useState(null);
     const [rating, setRating] = useState(null);
     const [reviews, setReviews] = useState([]);
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [loading, setLoading] = useState(true);
     const [error, setError] = useState(null);
     const [quantity, setQuantity] = useState(1);
@@ -41,8 +43,8 @@ const ProductDetails = () => {
     };
 
     /**
-     * Fetches product details and ratings in parallel.
-     * Use Promise.all to reduce loading time.
+     * Fetches product details and the review summary in parallel.
+     * The summary carries the rating, star counts and newest reviews in one request.
      */
     useEffect(() => {
         Promise.all([
@@ -50,11 +52,13 @@ const ProductDetails = () => {
                 if (!res.ok) throw new Error("Product not found");
                 return res.json();
             }),
-            fetch(`https://bakery-backend-kt9m.onrender.com/api/feedback/ratings/${id}`).then(res => res.ok ? res.json() : null).catch(() => null)
+            fetch(`https://bakery-backend-kt9m.onrender.com/api/feedback/summary/${id}`).then(res => res.ok ? res.json() : null).catch(() => null)
         ])
-            .then(([productData, ratingData]) => {
+            .then(([productData, summaryData]) => {
                 setProduct(productData);
-                setRating(ratingData);
+                setRating(summaryData);
+                setReviews(summaryData ? summaryData.reviews : []);
+                setNextCursor(summaryData ? summaryData.nextCursor : null);
                 setLoading(false);
             })
             .catch(err => {
@@ -64,6 +68,39 @@ const ProductDetails = () => {
             });
     }, [id]);
 
+    // Reviews come one page at a time; X-Next-Cursor points at the next one
+    const loadReviews = (star, cursor) => {
+        const url = `https://bakery-backend-kt9m.onrender.com/api/feedback/reviews/${id}?`
+            + (star ? `rating=${star}` : "")
+            + (cursor ? `&cursor=${encodeURIComponent(cursor)}` : "");
+        setLoadingMore(true);
+
+        fetch(url)
+            .then(res => {
+                if (!res.ok) throw new Error("Failed to fetch reviews");
+                setNextCursor(res.headers.get("X-Next-Cursor"));
+                return res.json();
+            })
+            .then(data => {
+                const reviewList = Array.isArray(data) ? data : [];
+                setReviews(prev => cursor ? [...prev, ...reviewList] : reviewList);
+            })
+            .catch(err => console.error(err))
+            .finally(() => setLoadingMore(false));
+    };
+
+    // "All" starts again from the summary's first page, which is already loaded
+    const changeFilter = (star) => {
+        setFilterRating(star);
+        if (star === 0) {
+            setReviews(rating.reviews);
+            setNextCursor(rating.nextCursor);
+        } else {
+            setReviews([]);
+            loadReviews(star, null);
+        }
+    };
+
     /**
      * Adds the selected quantity of product to cart.
      * Validates user authentication first.
@@ -131,13 +168,7 @@ const ProductDetails = () => {
                                         {rating.avgRating.toFixed(1)}
                                     </span>
                                     <button
-                                        onClick={() => {
-                                            fetch(`https://bakery-backend-kt9m.onrender.com/api/feedback/reviews/${id}`)
-                                                .then(res => res.json())
-                                                .then(data => setReviews(data))
-                                                .catch(() => setReviews([]));
-                                            setShowReviewsModal(true);
-                                        }}
+                                        onClick={() => setShowReviewsModal(true)}
                                         className="text-gray-400 hover:text-accent-1 text-sm transition-colors"
                                     >
                                         ({rating.count})
@@ -238,7 +269,7 @@ const ProductDetails = () => {
                         <div className="bg-header-bg text-white p-4 flex justify-between items-center">
                             <h3 className="text-xl font-bold">Customer Reviews</h3>
                             <button
-                                onClick={() => { setShowReviewsModal(false); setFilterRating(0); }}
+                                onClick={() => { setShowReviewsModal(false); changeFilter(0); }}
                                 className="p-2 hover:bg-white/10 rounded-full transition-all duration-300"
                             >
                                 <FaTimes size={18} />
@@ -252,13 +283,13 @@ const ProductDetails = () => {
                             {[0, 5, 4, 3, 2, 1].map(star => (
                                 <button
                                     key={star}
-                                    onClick={() => setFilterRating(star)}
+                                    onClick={() => changeFilter(star)}
                                     className={`px-3 py-1 rounded-full text-sm font-medium transition-all ${filterRating === star
                                         ? 'bg-accent-1 text-white'
                                         : 'bg-gray-200 text-gray-600 hover:bg-gray-300'
                                         }`}
                                 >
-                                    {star === 0 ? 'All' : `${star}★`}
+                                    {star === 0 ? `All (${rating.count})` : `${star}★ (${rating.stars[star - 1]})`}
                                 </button>
                             ))}
                         </div>
@@ -268,7 +299,7 @@ const ProductDetails = () => {
                             {reviews
                                 .filter(r => filterRating === 0 || r.rating === filterRating)
                                 .length === 0 ? (
-                                <p className="text-center text-gray-500 py-8">No reviews found</p>
+                                <p className="text-center text-gray-500 py-8">{loadingMore ? "Loading..." : "No reviews found"}</p>
                             ) : (
                                 reviews
                                     .filter(r => filterRating === 0 || r.rating === filterRating)
@@ -297,6 +328,17 @@ const ProductDetails = () => {
                                         </div>
                                     ))
                             )}
+                            {nextCursor && (
+                                <div className="text-center">
+                                    <button
+                                        onClick={() => loadReviews(filterRating, nextCursor)}
+                                        disabled={loadingMore}
+                                        className="px-6 py-2 rounded-lg bg-header-bg text-white font-bold hover:opacity-90 transition-all duration-300 disabled:opacity-50"
+                                    >
+                                        {loadingMore ? "Loading..." : "Load More Reviews"}
+                                    </button>
+                                </div>
+                            )}
                         </div>
                     </div>
                 </div>